@@ -0,0 +1,120 @@
+package papyrus.channel.node.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("channel.coordinator")
+public class ChannelCoordinatorProperties {
+    /**
+     * Number of worker threads shared by all outgoing channel state machines.
+     */
+    private int threads = 8;
+    /**
+     * Channels are woken up by events (transfers, completed transactions, new blocks, policy changes). 
+     * This is the delay of fallback cycle when no events received.
+     */
+    private Duration idleDelay = Duration.ofSeconds(30);
+    /**
+     * Maximum number of state updates of one channel sent to receiver and not yet acknowledged.
+     */
+    private int syncsInFlight = 4;
+    /**
+     * How long a state update sent to receiver waits for its ack before it is sent again.
+     */
+    private Duration syncTimeout = Duration.ofSeconds(10);
+    /**
+     * Delay before a failed state update is sent again, doubled on each failure in a row up to idle delay.
+     */
+    private Duration syncRetryDelay = Duration.ofSeconds(1);
+    /**
+     * Minimal interval between two state updates of one channel. Transfers registered meanwhile are 
+     * coalesced into the next update, so it also bounds the latency of a transfer.
+     */
+    private Duration syncMinInterval = Duration.ofMillis(100);
+    /**
+     * State update is sent before min interval passed when this number of transfers is pending.
+     */
+    private int syncMaxPendingTransfers = 1000;
+    /**
+     * Capacity reserved for a transfer by channel picking is released after this time if transfer is not registered.
+     */
+    private Duration reservationTimeout = Duration.ofSeconds(10);
+    /**
+     * Minimal interval between two attempts to add deposit to a channel, so a failing top-up is not repeated on
+     * every cycle.
+     */
+    private Duration topUpRetryDelay = Duration.ofMinutes(5);
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public Duration getIdleDelay() {
+        return idleDelay;
+    }
+
+    public void setIdleDelay(Duration idleDelay) {
+        this.idleDelay = idleDelay;
+    }
+
+    public int getSyncsInFlight() {
+        return syncsInFlight;
+    }
+
+    public void setSyncsInFlight(int syncsInFlight) {
+        this.syncsInFlight = syncsInFlight;
+    }
+
+    public Duration getSyncTimeout() {
+        return syncTimeout;
+    }
+
+    public void setSyncTimeout(Duration syncTimeout) {
+        this.syncTimeout = syncTimeout;
+    }
+
+    public Duration getSyncRetryDelay() {
+        return syncRetryDelay;
+    }
+
+    public void setSyncRetryDelay(Duration syncRetryDelay) {
+        this.syncRetryDelay = syncRetryDelay;
+    }
+
+    public Duration getSyncMinInterval() {
+        return syncMinInterval;
+    }
+
+    public void setSyncMinInterval(Duration syncMinInterval) {
+        this.syncMinInterval = syncMinInterval;
+    }
+
+    public int getSyncMaxPendingTransfers() {
+        return syncMaxPendingTransfers;
+    }
+
+    public void setSyncMaxPendingTransfers(int syncMaxPendingTransfers) {
+        this.syncMaxPendingTransfers = syncMaxPendingTransfers;
+    }
+
+    public Duration getReservationTimeout() {
+        return reservationTimeout;
+    }
+
+    public void setReservationTimeout(Duration reservationTimeout) {
+        this.reservationTimeout = reservationTimeout;
+    }
+
+    public Duration getTopUpRetryDelay() {
+        return topUpRetryDelay;
+    }
+
+    public void setTopUpRetryDelay(Duration topUpRetryDelay) {
+        this.topUpRetryDelay = topUpRetryDelay;
+    }
+}
@@ -0,0 +1,55 @@
+package papyrus.channel.node.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("channel.indexer")
+public class ChannelEventIndexerProperties {
+    /**
+     * Maximum number of blocks requested by one eth_getLogs call when indexer catches up.
+     */
+    private int maxBlockRange = 1000;
+    /**
+     * Block to start from when no checkpoint is stored, 0 means current block.
+     */
+    private long startBlock;
+    /**
+     * Number of blocks mined on top of a block before its events are published, 0 publishes events of the latest block.
+     */
+    private int confirmations;
+    /**
+     * Number of indexed block ranges remembered to find fork point when chain is reorganized below confirmation depth.
+     */
+    private int reorgWindow = 64;
+
+    public int getMaxBlockRange() {
+        return maxBlockRange;
+    }
+
+    public void setMaxBlockRange(int maxBlockRange) {
+        this.maxBlockRange = maxBlockRange;
+    }
+
+    public long getStartBlock() {
+        return startBlock;
+    }
+
+    public void setStartBlock(long startBlock) {
+        this.startBlock = startBlock;
+    }
+
+    public int getConfirmations() {
+        return confirmations;
+    }
+
+    public void setConfirmations(int confirmations) {
+        this.confirmations = confirmations;
+    }
+
+    public int getReorgWindow() {
+        return reorgWindow;
+    }
+
+    public void setReorgWindow(int reorgWindow) {
+        this.reorgWindow = reorgWindow;
+    }
+}
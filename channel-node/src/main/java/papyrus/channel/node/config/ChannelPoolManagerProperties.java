@@ -0,0 +1,71 @@
+package papyrus.channel.node.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("channel.pool")
+public class ChannelPoolManagerProperties {
+    /**
+     * How often transfer rate of pools is checked against remaining capacity of their active channels.
+     */
+    private Duration forecastInterval = Duration.ofSeconds(1);
+    /**
+     * Half-life of transfer rate moving average.
+     */
+    private Duration rateHalfLife = Duration.ofMinutes(1);
+    /**
+     * New channel is opened when capacity of active channels will be exhausted earlier than
+     * expected channel opening time multiplied by this factor.
+     */
+    private double preOpenMargin = 1.5;
+    /**
+     * Number of blocks new channel needs to become active when opening time was not measured yet:
+     * creation, deposit approval and deposit transactions.
+     */
+    private int openBlocks = 3;
+    /**
+     * Number of channels loaded from blockchain and persistent store simultaneously at startup.
+     */
+    private int loadThreads = 16;
+
+    public Duration getForecastInterval() {
+        return forecastInterval;
+    }
+
+    public void setForecastInterval(Duration forecastInterval) {
+        this.forecastInterval = forecastInterval;
+    }
+
+    public Duration getRateHalfLife() {
+        return rateHalfLife;
+    }
+
+    public void setRateHalfLife(Duration rateHalfLife) {
+        this.rateHalfLife = rateHalfLife;
+    }
+
+    public double getPreOpenMargin() {
+        return preOpenMargin;
+    }
+
+    public void setPreOpenMargin(double preOpenMargin) {
+        this.preOpenMargin = preOpenMargin;
+    }
+
+    public int getOpenBlocks() {
+        return openBlocks;
+    }
+
+    public void setOpenBlocks(int openBlocks) {
+        this.openBlocks = openBlocks;
+    }
+
+    public int getLoadThreads() {
+        return loadThreads;
+    }
+
+    public void setLoadThreads(int loadThreads) {
+        this.loadThreads = loadThreads;
+    }
+}
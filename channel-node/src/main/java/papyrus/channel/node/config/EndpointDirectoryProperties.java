@@ -0,0 +1,45 @@
+package papyrus.channel.node.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("channel.endpoints")
+public class EndpointDirectoryProperties {
+    /**
+     * Block to load endpoint registrations from, usually the block of registry deployment.
+     */
+    private long startBlock;
+    /**
+     * How long a registered endpoint is used before it is read from the registry again, in background.
+     */
+    private Duration ttl = Duration.ofHours(1);
+    /**
+     * How long an address without registered endpoint is remembered as such.
+     */
+    private Duration negativeTtl = Duration.ofMinutes(1);
+
+    public long getStartBlock() {
+        return startBlock;
+    }
+
+    public void setStartBlock(long startBlock) {
+        this.startBlock = startBlock;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public Duration getNegativeTtl() {
+        return negativeTtl;
+    }
+
+    public void setNegativeTtl(Duration negativeTtl) {
+        this.negativeTtl = negativeTtl;
+    }
+}
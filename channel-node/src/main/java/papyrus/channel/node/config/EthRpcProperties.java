@@ -2,14 +2,51 @@ package papyrus.channel.node.config;
 
 import java.math.BigInteger;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 public class EthRpcProperties {
     
+    /**
+     * Primary node, receives transactions and requests which depend on node state like filters and nonces.
+     */
     private String nodeUrl;
+    /**
+     * Additional nodes, share read requests with the primary one and take over when it fails.
+     */
+    private List<String> readNodeUrls = new ArrayList<>();
+    /**
+     * How often block numbers of nodes are checked when several nodes are configured.
+     */
+    private Duration healthCheckInterval = Duration.ofSeconds(5);
+    /**
+     * Node more than this number of blocks behind the best one receives no requests while others are available.
+     */
+    private int maxBlockLag = 2;
+    /**
+     * Maximum number of pooled keep-alive connections to one node.
+     */
+    private int maxConnections = 32;
+    /**
+     * Timeout of connecting to node and of waiting for response.
+     */
+    private Duration requestTimeout = Duration.ofSeconds(30);
     private BigInteger gasPrice;
     private BigInteger gasLimit;
     private int attempts = 40;
     private Duration sleep = Duration.ofSeconds(5);
+    /**
+     * How often new blocks are checked, by new block filter or by block number when node does not support filters.
+     */
+    private Duration blockPollInterval = Duration.ofSeconds(1);
+    /**
+     * How long gas needed by contract function is reused before it is estimated again.
+     */
+    private Duration gasEstimateTtl = Duration.ofMinutes(10);
+    /**
+     * Number of blocks mined on top of transaction block before its receipt is accepted, 0 accepts the first receipt.
+     */
+    private int confirmations;
 
     public String getNodeUrl() {
         return nodeUrl;
@@ -19,6 +56,46 @@ public class EthRpcProperties {
         this.nodeUrl = nodeUrl;
     }
 
+    public List<String> getReadNodeUrls() {
+        return readNodeUrls;
+    }
+
+    public void setReadNodeUrls(List<String> readNodeUrls) {
+        this.readNodeUrls = readNodeUrls;
+    }
+
+    public Duration getHealthCheckInterval() {
+        return healthCheckInterval;
+    }
+
+    public void setHealthCheckInterval(Duration healthCheckInterval) {
+        this.healthCheckInterval = healthCheckInterval;
+    }
+
+    public int getMaxBlockLag() {
+        return maxBlockLag;
+    }
+
+    public void setMaxBlockLag(int maxBlockLag) {
+        this.maxBlockLag = maxBlockLag;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public void setRequestTimeout(Duration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
     public BigInteger getGasPrice() {
         return gasPrice;
     }
@@ -50,4 +127,28 @@ public class EthRpcProperties {
     public void setSleep(Duration sleep) {
         this.sleep = sleep;
     }
+
+    public Duration getBlockPollInterval() {
+        return blockPollInterval;
+    }
+
+    public void setBlockPollInterval(Duration blockPollInterval) {
+        this.blockPollInterval = blockPollInterval;
+    }
+
+    public Duration getGasEstimateTtl() {
+        return gasEstimateTtl;
+    }
+
+    public void setGasEstimateTtl(Duration gasEstimateTtl) {
+        this.gasEstimateTtl = gasEstimateTtl;
+    }
+
+    public int getConfirmations() {
+        return confirmations;
+    }
+
+    public void setConfirmations(int confirmations) {
+        this.confirmations = confirmations;
+    }
 }
@@ -4,13 +4,19 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.web3j.protocol.Web3j;
-import org.web3j.protocol.http.HttpService;
+
+import papyrus.channel.node.server.ethereum.EthRpcEndpoints;
 
 @EnableConfigurationProperties({EthProperties.class})
 @Configuration
 public class Web3jConfigurer {
     @Bean
-    public Web3j getWeb3j(EthProperties properties) {
-        return Web3j.build(new HttpService(properties.getRpc().getNodeUrl()));
+    public EthRpcEndpoints getEthRpcEndpoints(EthProperties properties) {
+        return new EthRpcEndpoints(properties.getRpc());
+    }
+
+    @Bean
+    public Web3j getWeb3j(EthRpcEndpoints endpoints) {
+        return Web3j.build(endpoints);
     }
 }
@@ -65,6 +65,7 @@ import papyrus.channel.node.config.EthereumConfig;
 import papyrus.channel.node.server.ethereum.ContractsManager;
 import papyrus.channel.node.server.ethereum.ContractsManagerFactory;
 import papyrus.channel.node.server.ethereum.CryptoUtil;
+import papyrus.channel.node.server.peer.EndpointDirectory;
 import papyrus.channel.node.server.peer.EndpointRegistry;
 
 @Service
@@ -79,13 +80,15 @@ public class NodeServer {
     private ChannelServerProperties properties;
     private final EthereumConfig ethereumConfig;
     private final ContractsManagerFactory factory;
+    private final EndpointDirectory endpointDirectory;
     private Thread healthChecker;
 
-    public NodeServer(List<BindableService> bindableServices, ChannelServerProperties properties, EthereumConfig ethereumConfig, ContractsManagerFactory factory) {
+    public NodeServer(List<BindableService> bindableServices, ChannelServerProperties properties, EthereumConfig ethereumConfig, ContractsManagerFactory factory, EndpointDirectory endpointDirectory) {
         this.bindableServices = bindableServices;
         this.properties = properties;
         this.ethereumConfig = ethereumConfig;
         this.factory = factory;
+        this.endpointDirectory = endpointDirectory;
     }
 
     @EventListener(ContextStartedEvent.class)
@@ -120,8 +123,13 @@ public class NodeServer {
         } else {
             for (Address address : ethereumConfig.getAddresses()) {
                 ContractsManager contractManager = factory.getContractManager(address);
-                EndpointRegistry registry = new EndpointRegistry(contractManager.endpointRegistry());
-                registry.registerEndpoint(address, endpointUrl);
+                EndpointRegistry registry = new EndpointRegistry(contractManager);
+                //startup does not wait for the registry, registration transaction is mined in background
+                endpointDirectory.lookupAsync(address)
+                    .thenCompose(current -> registry.registerEndpointAsync(address, endpointUrl, current))
+                    .whenComplete((r, e) -> {
+                        if (e != null) log.error("Failed to register endpoint of {}", address, e);
+                    });
             }
         }
     }
@@ -21,10 +21,12 @@ import papyrus.channel.node.HealthCheckRequest;
 import papyrus.channel.node.HealthCheckResponse;
 import papyrus.channel.node.RemoveChannelPoolRequest;
 import papyrus.channel.node.RemoveChannelPoolResponse;
+import papyrus.channel.node.RpcEndpointMessage;
 import papyrus.channel.node.server.ServerIdService;
 import papyrus.channel.node.server.channel.incoming.IncomingChannelManagers;
 import papyrus.channel.node.server.channel.outgoing.ChannelPoolProperties;
 import papyrus.channel.node.server.channel.outgoing.OutgoingChannelPoolManager;
+import papyrus.channel.node.server.ethereum.EthRpcEndpoints;
 import papyrus.channel.node.server.ethereum.TokenConvert;
 
 //TODO client authentication
@@ -36,15 +38,18 @@ public class ChannelAdminImpl extends ChannelAdminGrpc.ChannelAdminImplBase {
     private OutgoingChannelPoolManager outgoingChannelPoolManager;
     private IncomingChannelManagers incomingChannelManagers;
     private final ServerIdService nodeServer;
+    private final EthRpcEndpoints rpcEndpoints;
 
     public ChannelAdminImpl(
         OutgoingChannelPoolManager outgoingChannelPoolManager, 
         IncomingChannelManagers incomingChannelManagers,
-        ServerIdService serverIdService
+        ServerIdService serverIdService,
+        EthRpcEndpoints rpcEndpoints
     ) {
         this.outgoingChannelPoolManager = outgoingChannelPoolManager;
         this.incomingChannelManagers = incomingChannelManagers;
         this.nodeServer = serverIdService;
+        this.rpcEndpoints = rpcEndpoints;
     }
 
     @Override
@@ -86,6 +91,7 @@ public class ChannelAdminImpl extends ChannelAdminGrpc.ChannelAdminImplBase {
         for (ChannelPoolProperties properties : pools) {
             builder.addPool(ChannelPoolMessage.newBuilder()
                 .setDeposit(TokenConvert.fromWei(properties.getPolicy().getDeposit()).toString())
+                .setTopUpThreshold(TokenConvert.fromWei(properties.getPolicy().getTopUpThreshold()).toString())
                 .setMinActiveChannels(properties.getMinActiveChannels())
                 .setMaxActiveChannels(properties.getMaxActiveChannels())
                 .setProperties(properties.getBlockchainProperties().toMessage())
@@ -114,9 +120,22 @@ public class ChannelAdminImpl extends ChannelAdminGrpc.ChannelAdminImplBase {
 
     @Override
     public void healthCheck(HealthCheckRequest request, StreamObserver<HealthCheckResponse> responseObserver) {
-        responseObserver.onNext(HealthCheckResponse.newBuilder()
+        HealthCheckResponse.Builder response = HealthCheckResponse.newBuilder()
             .setServerUid(nodeServer.getRunId().toString())
-            .build());
+            .setReady(outgoingChannelPoolManager.isReady())
+            .setSyncUpdates(outgoingChannelPoolManager.getSyncUpdates())
+            .setCoalescedTransfers(outgoingChannelPoolManager.getCoalescedTransfers());
+        for (EthRpcEndpoints.Endpoint endpoint : rpcEndpoints.getEndpoints()) {
+            response.addRpcEndpoints(RpcEndpointMessage.newBuilder()
+                .setUrl(endpoint.getUrl())
+                .setHealthy(endpoint.isHealthy())
+                .setRequests(endpoint.getRequests())
+                .setErrors(endpoint.getErrors())
+                .setLatencyMs(endpoint.getLatencyMs())
+                .setBlockNumber(endpoint.getBlockNumber())
+            );
+        }
+        responseObserver.onNext(response.build());
         responseObserver.onCompleted();
     }
 }
@@ -1,12 +1,20 @@
 package papyrus.channel.node.server.channel;
 
+import java.io.IOException;
 import java.math.BigInteger;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
-
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.abi.TypeReference;
 import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.Type;
 import org.web3j.abi.datatypes.generated.Uint256;
 
 import com.google.common.base.Preconditions;
@@ -15,9 +23,12 @@ import papyrus.channel.node.contract.ChannelContract;
 import papyrus.channel.node.contract.ChannelManagerContract;
 import papyrus.channel.node.entity.ChannelProperties;
 import papyrus.channel.node.entity.DataObject;
+import papyrus.channel.node.server.ethereum.EthCallBatch;
+import papyrus.channel.node.server.ethereum.EthRpcEndpoints;
 
 public class BlockchainChannel extends DataObject {
-    private static final int TIMEOUT_MS = 10000;
+    private static final Logger log = LoggerFactory.getLogger(BlockchainChannel.class);
+
     private final Address senderAddress;
     private final Address clientAddress;
     private final Address receiverAddress;
@@ -29,6 +40,7 @@ public class BlockchainChannel extends DataObject {
     private long closeRequested;
     private long closed;
     private long settled;
+    private long audited;
     private long nonce;
     private BigInteger completedTransfers = BigInteger.ZERO;
 
@@ -44,56 +56,111 @@ public class BlockchainChannel extends DataObject {
         this.receiverAddress = receiverAddress;
     }
 
-    private BlockchainChannel(Address managerAddress, ChannelContract contract) throws ExecutionException, InterruptedException, TimeoutException {
+    private static final int STATE_NUMBERS = 11;
+    private static final int STATE_PARTIES = 5;
+
+    /**
+     * getState() returns static arrays of numbers and addresses, they are ABI-encoded inline,
+     * so the result is decoded as a flat list of values.
+     */
+    private static final Function GET_STATE = new Function("getState", Collections.emptyList(), stateOutputs());
+
+    /**
+     * Constant functions of channel contract with the same values as {@link #GET_STATE} returns, in the same order.
+     * Used for contracts deployed before getState() was added.
+     */
+    private static final List<Function> STATE_FUNCTIONS = Arrays.asList(
+        uintFunction("settleTimeout"),
+        uintFunction("closeTimeout"),
+        uintFunction("auditTimeout"),
+        uintFunction("opened"),
+        uintFunction("closeRequested"),
+        uintFunction("closed"),
+        uintFunction("settled"),
+        uintFunction("audited"),
+        uintFunction("balance"),
+        uintFunction("nonce"),
+        uintFunction("completedTransfers"),
+        addressFunction("manager"),
+        addressFunction("sender"),
+        addressFunction("client"),
+        addressFunction("receiver"),
+        addressFunction("auditor")
+    );
+
+    private BlockchainChannel(Address managerAddress, ChannelContract contract, List<Type> state) {
+        Preconditions.checkArgument(state.size() == STATE_NUMBERS + STATE_PARTIES, "Wrong state size: %s", state.size());
+        Iterator<Type> values = state.iterator();
         this.channelAddress = new Address(contract.getContractAddress());
-        long settleTimeout = getLong(contract.settleTimeout());
+        long settleTimeout = getLong(values.next());
         Preconditions.checkState(settleTimeout > 0);
-        long closeTimeout = getLong(contract.closeTimeout());
+        long closeTimeout = getLong(values.next());
         Preconditions.checkState(closeTimeout >= 0);
-        long auditTimeout = getLong(contract.closeTimeout());
+        long auditTimeout = getLong(values.next());
         Preconditions.checkState(auditTimeout >= 0);
         ChannelProperties properties = new ChannelProperties();
         properties.setSettleTimeout(settleTimeout);
         properties.setCloseTimeout(closeTimeout);
         properties.setAuditTimeout(auditTimeout);
         this.properties = properties;
-        created = getLong(contract.opened());
+        created = getLong(values.next());
         Preconditions.checkState(created > 0);
-        closed = getLong(contract.closed());
-        Preconditions.checkState(closed >= 0);
-        closeRequested = getLong(contract.closeRequested());
+        closeRequested = getLong(values.next());
         Preconditions.checkState(closeRequested >= 0);
-        settled = getLong(contract.settled());
+        closed = getLong(values.next());
+        Preconditions.checkState(closed >= 0);
+        settled = getLong(values.next());
         Preconditions.checkState(settled >= 0);
-        Address manager_address = getAddress(contract.manager());
+        audited = getLong(values.next());
+        Preconditions.checkState(audited >= 0);
+        balance = getUint(values.next());
+        Preconditions.checkState(balance.signum() >= 0);
+        nonce = getLong(values.next());
+        Preconditions.checkState(nonce >= 0);
+        completedTransfers = getUint(values.next());
+        Preconditions.checkState(completedTransfers.signum() >= 0);
+        Address manager_address = getAddress(values.next());
         Preconditions.checkArgument(managerAddress.equals(manager_address), "Wrong manager address: %s", manager_address);
-        senderAddress = getAddress(contract.sender());
+        senderAddress = getAddress(values.next());
         Preconditions.checkState(senderAddress != null);
-        clientAddress = getAddress(contract.client());
+        clientAddress = getAddress(values.next());
         Preconditions.checkState(clientAddress != null);
-        receiverAddress = getAddress(contract.receiver());
+        receiverAddress = getAddress(values.next());
         Preconditions.checkState(receiverAddress != null);
-        balance = contract.balance().get(TIMEOUT_MS, TimeUnit.MILLISECONDS).getValue();
-        Preconditions.checkState(balance.signum() >= 0);
-        nonce = getLong(contract.nonce());
-        Preconditions.checkState(nonce >= 0);
-        completedTransfers = contract.completedTransfers().get(TIMEOUT_MS, TimeUnit.MILLISECONDS).getValue();
-        Preconditions.checkState(completedTransfers.signum() >= 0);
-        Address auditorAddress = getAddress(contract.auditor());
+        Address auditorAddress = getAddress(values.next());
         properties.setAuditor(auditorAddress);
         this.contract = contract;
     }
 
-    private long getLong(Future<Uint256> future) throws InterruptedException, ExecutionException, TimeoutException {
-        return getResult(future).getValue().longValueExact();
+    private static List<TypeReference<?>> stateOutputs() {
+        List<TypeReference<?>> outputs = new ArrayList<>(STATE_NUMBERS + STATE_PARTIES);
+        for (int i = 0; i < STATE_NUMBERS; i++) {
+            outputs.add(new TypeReference<Uint256>() {});
+        }
+        for (int i = 0; i < STATE_PARTIES; i++) {
+            outputs.add(new TypeReference<Address>() {});
+        }
+        return outputs;
     }
 
-    private Uint256 getResult(Future<Uint256> future) throws InterruptedException, ExecutionException, TimeoutException {
-        return future.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    private static Function uintFunction(String name) {
+        return new Function(name, Collections.emptyList(), Collections.singletonList(new TypeReference<Uint256>() {}));
     }
 
-    private Address getAddress(Future<Address> address) throws InterruptedException, ExecutionException, TimeoutException {
-        Address a = address.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    private static Function addressFunction(String name) {
+        return new Function(name, Collections.emptyList(), Collections.singletonList(new TypeReference<Address>() {}));
+    }
+
+    private static BigInteger getUint(Type value) {
+        return ((Uint256) value).getValue();
+    }
+
+    private static long getLong(Type value) {
+        return getUint(value).longValueExact();
+    }
+
+    private static Address getAddress(Type value) {
+        Address a = (Address) value;
         return a != null && !a.getValue().equals(BigInteger.ZERO) ? a : null;
     }
 
@@ -153,6 +220,14 @@ public class BlockchainChannel extends DataObject {
         this.settled = settled;
     }
 
+    public long getAudited() {
+        return audited;
+    }
+
+    public void setAudited(long audited) {
+        this.audited = audited;
+    }
+
     public ChannelContract getContract() {
         return contract;
     }
@@ -201,11 +276,50 @@ public class BlockchainChannel extends DataObject {
         this.created = contract.getTransactionReceipt().get().getBlockNumber().longValueExact();
     }
     
-    public static BlockchainChannel fromExistingContract(ChannelManagerContract managerContract, ChannelContract contract) {
+    /**
+     * Reads state of the contract with one getState() call, falls back to one batch of getter calls
+     * for contracts deployed before getState() was added.
+     */
+    public static BlockchainChannel fromExistingContract(ChannelManagerContract managerContract, ChannelContract contract, EthCallBatch batch) {
         try {
-            return new BlockchainChannel(new Address(managerContract.getContractAddress()), contract);
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            return EthRpcEndpoints.await(fromExistingContractAsync(managerContract, contract, batch));
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * Same as {@link #fromExistingContract}, does not block while the node processes calls.
+     */
+    public static CompletableFuture<BlockchainChannel> fromExistingContractAsync(ChannelManagerContract managerContract, ChannelContract contract, EthCallBatch batch) {
+        Address managerAddress = new Address(managerContract.getContractAddress());
+        Address contractAddress = new Address(contract.getContractAddress());
+        return readState(contractAddress, batch)
+            .thenCompose(state -> state.isEmpty() ? readStateByGetters(contractAddress, batch) : CompletableFuture.completedFuture(state))
+            .thenApply(state -> new BlockchainChannel(managerAddress, contract, state));
+    }
+
+    private static CompletableFuture<List<Type>> readState(Address contractAddress, EthCallBatch batch) {
+        return batch.callAsync(Collections.singletonList(new EthCallBatch.Call(contractAddress, GET_STATE)))
+            .handle((results, error) -> {
+                if (error == null) return results.get(0);
+                //some nodes report call of missing function as error instead of empty result
+                log.debug("getState() failed for {}: {}", contractAddress, error.getMessage());
+                return Collections.<Type>emptyList();
+            });
+    }
+
+    private static CompletableFuture<List<Type>> readStateByGetters(Address contractAddress, EthCallBatch batch) {
+        List<EthCallBatch.Call> calls = new ArrayList<>(STATE_FUNCTIONS.size());
+        for (Function function : STATE_FUNCTIONS) {
+            calls.add(new EthCallBatch.Call(contractAddress, function));
+        }
+        return batch.callAsync(calls).thenApply(results -> {
+            List<Type> state = new ArrayList<>(STATE_FUNCTIONS.size());
+            for (List<Type> result : results) {
+                state.add(result.get(0));
+            }
+            return state;
+        });
+    }
 }
@@ -0,0 +1,144 @@
+package papyrus.channel.node.server.channel;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.web3j.abi.FunctionReturnDecoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.crypto.Hash;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.utils.Numeric;
+
+import papyrus.channel.node.entity.DataObject;
+
+/**
+ * Channel lifecycle event emitted by channel manager or channel contract.
+ */
+public class ChannelEvent extends DataObject {
+    private static final Map<String, EventType> TYPES_BY_TOPIC = new HashMap<>();
+
+    static {
+        for (EventType type : EventType.values()) {
+            TYPES_BY_TOPIC.put(type.topic, type);
+        }
+    }
+
+    private final EventType type;
+    private final Address channelAddress;
+    private final long blockNumber;
+    private final long logIndex;
+    private final String blockHash;
+    //only for NEW and DELETED
+    private final Address senderAddress;
+    private final Address receiverAddress;
+    //only for CLOSE_REQUESTED and CLOSED
+    private final Address closingAddress;
+
+    private ChannelEvent(EventType type, Address channelAddress, Log log, Address senderAddress, Address receiverAddress, Address closingAddress) {
+        this.type = type;
+        this.channelAddress = channelAddress;
+        this.blockNumber = log.getBlockNumber().longValueExact();
+        this.logIndex = log.getLogIndex().longValueExact();
+        this.blockHash = log.getBlockHash();
+        this.senderAddress = senderAddress;
+        this.receiverAddress = receiverAddress;
+        this.closingAddress = closingAddress;
+    }
+
+    /**
+     * @return topics of all event types, to be used as alternatives of first topic in log filter
+     */
+    public static List<String> allTopics() {
+        return new ArrayList<>(TYPES_BY_TOPIC.keySet());
+    }
+
+    /**
+     * @return event or empty if log is not a channel event, manager events are accepted only from the manager
+     */
+    public static Optional<ChannelEvent> parse(Log log, Address managerAddress) {
+        if (log.getTopics() == null || log.getTopics().isEmpty()) return Optional.empty();
+        EventType type = TYPES_BY_TOPIC.get(log.getTopics().get(0));
+        if (type == null) return Optional.empty();
+        Address emitter = new Address(log.getAddress());
+        if (type.fromManager != emitter.equals(managerAddress)) return Optional.empty();
+        List<Type> data = FunctionReturnDecoder.decode(log.getData(), type.dataTypes);
+        switch (type) {
+            case NEW:
+            case DELETED:
+                return Optional.of(new ChannelEvent(type, (Address) data.get(0), log, topicAddress(log, 1), topicAddress(log, 2), null));
+            case CLOSE_REQUESTED:
+            case CLOSED:
+                return Optional.of(new ChannelEvent(type, emitter, log, null, null, (Address) data.get(0)));
+            default:
+                return Optional.of(new ChannelEvent(type, emitter, log, null, null, null));
+        }
+    }
+
+    private static Address topicAddress(Log log, int index) {
+        return new Address(Numeric.toBigInt(log.getTopics().get(index)));
+    }
+
+    public EventType getType() {
+        return type;
+    }
+
+    public Address getChannelAddress() {
+        return channelAddress;
+    }
+
+    public long getBlockNumber() {
+        return blockNumber;
+    }
+
+    public long getLogIndex() {
+        return logIndex;
+    }
+
+    public String getBlockHash() {
+        return blockHash;
+    }
+
+    public Address getSenderAddress() {
+        return senderAddress;
+    }
+
+    public Address getReceiverAddress() {
+        return receiverAddress;
+    }
+
+    public Address getClosingAddress() {
+        return closingAddress;
+    }
+
+    public enum EventType {
+        NEW(true, "ChannelNew(address,address,address,address,uint256,uint256,uint256)", Arrays.asList(
+            new TypeReference<Address>() {}, new TypeReference<Address>() {},
+            new TypeReference<Uint256>() {}, new TypeReference<Uint256>() {}, new TypeReference<Uint256>() {})),
+        DELETED(true, "ChannelDeleted(address,address,address)", Collections.singletonList(new TypeReference<Address>() {})),
+        CLOSE_REQUESTED(false, "ChannelCloseRequested(address,uint256)", Arrays.asList(new TypeReference<Address>() {}, new TypeReference<Uint256>() {})),
+        CLOSED(false, "ChannelClosed(address,uint256)", Arrays.asList(new TypeReference<Address>() {}, new TypeReference<Uint256>() {})),
+        SETTLED(false, "ChannelSettled(uint256)", Collections.singletonList(new TypeReference<Uint256>() {})),
+        AUDITED(false, "ChannelAudited(uint256)", Collections.singletonList(new TypeReference<Uint256>() {})),
+        ;
+
+        final boolean fromManager;
+        final String topic;
+        final List<TypeReference<Type>> dataTypes;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        EventType(boolean fromManager, String signature, List<? extends TypeReference<?>> dataTypes) {
+            this.fromManager = fromManager;
+            this.topic = Numeric.toHexString(Hash.sha3(signature.getBytes(StandardCharsets.UTF_8)));
+            this.dataTypes = (List) dataTypes;
+        }
+    }
+}
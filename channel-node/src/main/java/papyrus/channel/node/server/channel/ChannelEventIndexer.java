@@ -0,0 +1,292 @@
+package papyrus.channel.node.server.channel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.protocol.core.methods.response.Log;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import papyrus.channel.node.config.ChannelEventIndexerProperties;
+import papyrus.channel.node.config.EthereumConfig;
+import papyrus.channel.node.server.ethereum.BlockClock;
+import papyrus.channel.node.server.ethereum.ContractsManagerFactory;
+import papyrus.channel.node.server.ethereum.EthCallBatch;
+import papyrus.channel.node.server.ethereum.TokenEvent;
+import papyrus.channel.node.server.ethereum.TokenService;
+import papyrus.channel.node.util.BlockHashWindow;
+
+/**
+ * Follows channel lifecycle events of all channels with one eth_getLogs stream. Logs are requested in block ranges
+ * on each new block, the last processed block is stored as checkpoint, so the node continues after restart without
+ * missing events. Subscribers receive events in blockchain order on the indexer thread.
+ * <br>
+ * Manager events are passed only when a managed address is sender or receiver, channel contract events are passed
+ * for all channels: subscribers look up channels they know by event address. Transfer and approval events of the
+ * token contract are requested for the same block ranges and passed to token services of managed addresses, other
+ * components subscribe to logs of their contracts by {@link #subscribeLogs}: logs of all such contracts are
+ * requested by one eth_getLogs call per range.
+ * <br>
+ * Events are published after the configured number of confirmations. Hashes of indexed blocks are kept in
+ * {@link BlockHashWindow}: when the chain is reorganized below them, the indexer rolls back to the fork point and
+ * indexes the new blocks again, instead of subscribers re-reading all channels.
+ */
+@EnableConfigurationProperties(ChannelEventIndexerProperties.class)
+@Component
+public class ChannelEventIndexer {
+    private static final Logger log = LoggerFactory.getLogger(ChannelEventIndexer.class);
+
+    private final EthCallBatch batch;
+    private final BlockClock blockClock;
+    private final EthereumConfig ethereumConfig;
+    private final LogCheckpointRepository checkpointRepository;
+    private final Address managerAddress;
+    private final Map<Address, TokenService> tokenServices = new HashMap<>();
+    private final String checkpointName;
+    private final int maxBlockRange;
+    private final long startBlock;
+    private final int confirmations;
+    //accessed by indexer thread only
+    private final BlockHashWindow indexedBlocks;
+    private final List<String> topics = ChannelEvent.allTopics();
+    private final List<Consumer<ChannelEvent>> subscribers = new CopyOnWriteArrayList<>();
+    private final List<LogSubscription> logSubscriptions = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor;
+    private final AtomicBoolean catchUpScheduled = new AtomicBoolean();
+    private final LongConsumer blockListener = this::onNewBlock;
+    //last processed block, accessed by indexer thread only
+    private long checkpoint = -1;
+
+    public ChannelEventIndexer(
+        EthCallBatch batch,
+        BlockClock blockClock,
+        EthereumConfig ethereumConfig,
+        ContractsManagerFactory contractsManagerFactory,
+        LogCheckpointRepository checkpointRepository,
+        ChannelEventIndexerProperties properties
+    ) {
+        this.batch = batch;
+        this.blockClock = blockClock;
+        this.ethereumConfig = ethereumConfig;
+        this.checkpointRepository = checkpointRepository;
+        managerAddress = new Address(contractsManagerFactory.getMainContractManager().channelManager().getContractAddress());
+        for (Address address : ethereumConfig.getAddresses()) {
+            tokenServices.put(address, contractsManagerFactory.getContractManager(address).getTokenService());
+        }
+        subscribeLogs(
+            new Address(contractsManagerFactory.getMainContractManager().token().getContractAddress()),
+            TokenEvent.allTopics(),
+            l -> TokenEvent.parse(l).ifPresent(this::publishTokenEvent),
+            //token events of new blocks would be applied on top of removed ones
+            forkPoint -> tokenServices.values().forEach(TokenService::invalidateBalance)
+        );
+        checkpointName = "channel_events:" + managerAddress;
+        maxBlockRange = properties.getMaxBlockRange();
+        startBlock = properties.getStartBlock();
+        confirmations = properties.getConfirmations();
+        indexedBlocks = new BlockHashWindow(properties.getReorgWindow());
+        executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("Channel event indexer").setDaemon(true).build());
+    }
+
+    @PostConstruct
+    public void init() {
+        blockClock.subscribe(blockListener);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        blockClock.unsubscribe(blockListener);
+        executor.shutdownNow();
+    }
+
+    public void subscribe(Consumer<ChannelEvent> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Consumer<ChannelEvent> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * Subscribes to logs of a contract, they are passed in blockchain order on the indexer thread for blocks indexed
+     * after subscription.
+     * @param topics alternatives of the first topic
+     * @param rollback receives fork point when logs of blocks above it were removed by chain reorganization
+     */
+    public void subscribeLogs(Address contractAddress, List<String> topics, Consumer<Log> subscriber, LongConsumer rollback) {
+        logSubscriptions.add(new LogSubscription(contractAddress, topics, subscriber, rollback));
+    }
+
+    private void onNewBlock(long blockNumber) {
+        //blocks arrived during catch up are picked by it
+        if (catchUpScheduled.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                catchUpScheduled.set(false);
+                catchUp();
+            });
+        }
+    }
+
+    private void catchUp() {
+        try {
+            long head = blockClock.getBlockNumber() - confirmations;
+            if (checkpoint < 0) {
+                checkpoint = loadCheckpoint(head);
+            }
+            checkReorganization();
+            while (checkpoint < head && !Thread.currentThread().isInterrupted()) {
+                long toBlock = Math.min(head, checkpoint + maxBlockRange);
+                //hash is taken before logs, so a reorganization in between is found on next check
+                String toBlockHash = batch.getBlockHashes(Collections.singletonList(toBlock)).get(toBlock);
+                if (toBlockHash == null) break;
+                List<Log> logs = batch.getLogs(checkpoint + 1, toBlock, topics);
+                //both requested before publishing, contract logs must not be applied twice
+                List<LogSubscription> contracts = new ArrayList<>(logSubscriptions);
+                List<Log> contractLogs = batch.getLogs(
+                    checkpoint + 1, toBlock,
+                    contracts.stream().map(c -> c.contractAddress).collect(Collectors.toSet()),
+                    contracts.stream().flatMap(c -> c.topics.stream()).collect(Collectors.toSet())
+                );
+                for (Log l : logs) {
+                    Optional<ChannelEvent> event = ChannelEvent.parse(l, managerAddress);
+                    if (event.isPresent() && isRelevant(event.get())) {
+                        publish(event.get());
+                    }
+                }
+                for (Log l : contractLogs) {
+                    publishLog(contracts, l);
+                }
+                indexedBlocks.put(toBlock, toBlockHash);
+                saveCheckpoint(toBlock);
+            }
+        } catch (Exception e) {
+            //retried on next block from the same checkpoint
+            log.warn("Failed to index channel events after block {}: {}", checkpoint, e.toString());
+        }
+    }
+
+    /**
+     * Rolls checkpoint back to the last indexed block which is still in the chain.
+     */
+    private void checkReorganization() throws IOException {
+        if (indexedBlocks.isEmpty()) return;
+        long lastBlock = indexedBlocks.lastBlock();
+        //hash of the last block covers all blocks below it
+        if (indexedBlocks.lastHash().equals(batch.getBlockHashes(Collections.singletonList(lastBlock)).get(lastBlock))) return;
+        Map<Long, String> current = batch.getBlockHashes(indexedBlocks.blocks());
+        OptionalLong forkPoint = indexedBlocks.findForkPoint(current);
+        if (!forkPoint.isPresent()) return;
+        log.warn("Chain reorganized below block {}, indexing channel events again from block {}", lastBlock, forkPoint.getAsLong() + 1);
+        indexedBlocks.rollback(forkPoint.getAsLong());
+        saveCheckpoint(forkPoint.getAsLong());
+        for (LogSubscription subscription : logSubscriptions) {
+            try {
+                subscription.rollback.accept(forkPoint.getAsLong());
+            } catch (Exception e) {
+                log.error("Log subscriber failed to roll back", e);
+            }
+        }
+    }
+
+    private void saveCheckpoint(long block) {
+        checkpoint = block;
+        checkpointRepository.save(new LogCheckpointBean(checkpointName, checkpoint));
+    }
+
+    private long loadCheckpoint(long head) {
+        Optional<LogCheckpointBean> stored = checkpointRepository.getById(checkpointName);
+        if (stored.isPresent()) {
+            log.info("Indexing channel events from checkpoint {}, current block {}", stored.get().getBlock(), head);
+            return stored.get().getBlock();
+        }
+        //channels loaded at startup already reflect current state
+        long start = startBlock > 0 ? startBlock - 1 : head;
+        log.info("No channel events checkpoint, indexing from block {}", start + 1);
+        return start;
+    }
+
+    private boolean isRelevant(ChannelEvent event) {
+        switch (event.getType()) {
+            case NEW:
+            case DELETED:
+                return ethereumConfig.hasAddress(event.getSenderAddress()) || ethereumConfig.hasAddress(event.getReceiverAddress());
+            default:
+                return true;
+        }
+    }
+
+    private void publishTokenEvent(TokenEvent event) {
+        TokenService from = tokenServices.get(event.getFrom());
+        TokenService to = tokenServices.get(event.getTo());
+        if (from == null && to == null) return;
+        log.debug("Token event {}", event);
+        try {
+            if (from != null) from.onTokenEvent(event);
+            if (to != null && to != from) to.onTokenEvent(event);
+        } catch (Exception e) {
+            log.error("Token event subscriber failed", e);
+        }
+    }
+
+    private void publishLog(List<LogSubscription> contracts, Log l) {
+        Address address = new Address(l.getAddress());
+        List<String> logTopics = l.getTopics();
+        String topic = logTopics == null || logTopics.isEmpty() ? null : logTopics.get(0);
+        for (LogSubscription subscription : contracts) {
+            if (!subscription.contractAddress.equals(address) || !subscription.topics.contains(topic)) continue;
+            try {
+                subscription.subscriber.accept(l);
+            } catch (Exception e) {
+                log.error("Log subscriber failed", e);
+            }
+        }
+    }
+
+    private void publish(ChannelEvent event) {
+        log.debug("Channel event {}", event);
+        for (Consumer<ChannelEvent> subscriber : subscribers) {
+            try {
+                subscriber.accept(event);
+            } catch (Exception e) {
+                log.error("Channel event subscriber failed", e);
+            }
+        }
+    }
+
+    private static class LogSubscription {
+        final Address contractAddress;
+        final Set<String> topics;
+        final Consumer<Log> subscriber;
+        final LongConsumer rollback;
+
+        LogSubscription(Address contractAddress, List<String> topics, Consumer<Log> subscriber, LongConsumer rollback) {
+            this.contractAddress = contractAddress;
+            this.topics = ImmutableSet.copyOf(topics);
+            this.subscriber = subscriber;
+            this.rollback = rollback;
+        }
+    }
+}
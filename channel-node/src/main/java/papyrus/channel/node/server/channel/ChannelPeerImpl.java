@@ -1,6 +1,7 @@
 package papyrus.channel.node.server.channel;
 
 import java.security.SignatureException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,11 +9,16 @@ import org.springframework.stereotype.Component;
 import org.web3j.abi.datatypes.Address;
 
 import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import papyrus.channel.Error;
+import papyrus.channel.StatusCode;
 import papyrus.channel.node.server.channel.incoming.IncomingChannelManagers;
 import papyrus.channel.protocol.ChannelOpenedRequest;
 import papyrus.channel.protocol.ChannelOpenedResponse;
 import papyrus.channel.protocol.ChannelPeerGrpc;
+import papyrus.channel.protocol.ChannelStateAck;
+import papyrus.channel.protocol.ChannelStateMessage;
 import papyrus.channel.protocol.ChannelUpdateRequest;
 import papyrus.channel.protocol.ChannelUpdateResponse;
 
@@ -43,4 +49,54 @@ public class ChannelPeerImpl extends ChannelPeerGrpc.ChannelPeerImplBase {
             responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Invalid signature").asException());
         }
     }
+
+    /**
+     * Acknowledges each state of the stream. Next state is requested only when the ack can be written, so a slow
+     * receiver pushes back on the sender by gRPC flow control.
+     */
+    @Override
+    public StreamObserver<ChannelStateMessage> stateStream(StreamObserver<ChannelStateAck> responseObserver) {
+        ServerCallStreamObserver<ChannelStateAck> acks = (ServerCallStreamObserver<ChannelStateAck>) responseObserver;
+        acks.disableAutoInboundFlowControl();
+        AtomicBoolean requested = new AtomicBoolean();
+        acks.setOnReadyHandler(() -> {
+            if (acks.isReady() && requested.compareAndSet(false, true)) {
+                acks.request(1);
+            }
+        });
+        return new StreamObserver<ChannelStateMessage>() {
+            @Override
+            public void onNext(ChannelStateMessage state) {
+                ChannelStateAck.Builder ack = ChannelStateAck.newBuilder()
+                    .setChannelAddress(state.getChannelAddress())
+                    .setNonce(state.getNonce());
+                try {
+                    incomingChannelManagers.updateSenderState(new SignedChannelState(state));
+                } catch (SignatureException e) {
+                    log.warn("Invalid signature", e);
+                    ack.setError(Error.newBuilder().setStatus(StatusCode.BAD_REQUEST).setMessage("Invalid signature"));
+                } catch (Exception e) {
+                    //failure of one channel must not close the stream of others
+                    log.warn("Failed to update channel {} state {}", state.getChannelAddress(), state.getNonce(), e);
+                    ack.setError(Error.newBuilder().setStatus(StatusCode.BAD_REQUEST).setMessage(e.toString()));
+                }
+                acks.onNext(ack.build());
+                if (acks.isReady()) {
+                    acks.request(1);
+                } else {
+                    requested.set(false);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                log.debug("State stream failed: {}", t.toString());
+            }
+
+            @Override
+            public void onCompleted() {
+                acks.onCompleted();
+            }
+        };
+    }
 }
@@ -0,0 +1,38 @@
+package papyrus.channel.node.server.channel;
+
+import com.datastax.driver.mapping.annotations.PartitionKey;
+import com.datastax.driver.mapping.annotations.Table;
+
+import papyrus.channel.node.server.persistence.Keyspaces;
+
+@Table(keyspace = Keyspaces.CHANNEL, name = "log_checkpoint")
+public class LogCheckpointBean {
+    @PartitionKey
+    private String name;
+    
+    private long block;
+
+    public LogCheckpointBean() {
+    }
+
+    public LogCheckpointBean(String name, long block) {
+        this.name = name;
+        this.block = block;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getBlock() {
+        return block;
+    }
+
+    public void setBlock(long block) {
+        this.block = block;
+    }
+}
@@ -0,0 +1,12 @@
+package papyrus.channel.node.server.channel;
+
+import org.springframework.stereotype.Repository;
+
+import papyrus.channel.node.server.persistence.CassandraRepository;
+
+@Repository
+public class LogCheckpointRepository extends CassandraRepository<String, LogCheckpointBean> {
+    public LogCheckpointRepository() {
+        super(LogCheckpointBean.class);
+    }
+}
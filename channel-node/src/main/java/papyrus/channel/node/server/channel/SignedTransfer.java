@@ -30,6 +30,8 @@ public class SignedTransfer extends SignedObject {
     private Address channelAddress;
     private BigDecimal value;
     private boolean locked;
+    //capacity reservation in outgoing channel, not stored
+    private long reservationId;
 
     public SignedTransfer() {
     }
@@ -42,6 +44,7 @@ public class SignedTransfer extends SignedObject {
             transferMessage.getLock() == MessageLock.AUDITOR
         );
         signature = Numeric.hexStringToByteArray(transferMessage.getSignature());
+        reservationId = transferMessage.getReservationId();
     }
 
     public SignedTransfer(String transferId, String channelAddress, String value, boolean locked) {
@@ -101,6 +104,15 @@ public class SignedTransfer extends SignedObject {
         this.locked = locked;
     }
 
+    @Transient
+    public long getReservationId() {
+        return reservationId;
+    }
+
+    public void setReservationId(long reservationId) {
+        this.reservationId = reservationId;
+    }
+
     public TransferMessage toMessage() {
         return TransferMessage.newBuilder()
             .setChannelAddress(Numeric.toHexStringNoPrefix(channelAddress.getValue()))
@@ -13,8 +13,11 @@ import com.google.common.base.Throwables;
 
 import papyrus.channel.node.contract.ChannelContract;
 import papyrus.channel.node.server.channel.BlockchainChannel;
+import papyrus.channel.node.server.channel.ChannelEvent;
+import papyrus.channel.node.server.channel.ChannelEventIndexer;
 import papyrus.channel.node.server.ethereum.ContractsManager;
 import papyrus.channel.node.server.ethereum.ContractsManagerFactory;
+import papyrus.channel.node.server.ethereum.EthCallBatch;
 
 @Component
 public class IncomingChannelRegistry {
@@ -22,9 +25,22 @@ public class IncomingChannelRegistry {
     
     private final Map<Address, IncomingChannelState> allChannelsByAddress = new ConcurrentHashMap<>();
     private final ContractsManager contractsManager;
+    private final EthCallBatch ethCallBatch;
 
-    public IncomingChannelRegistry(ContractsManagerFactory factory) {
+    public IncomingChannelRegistry(ContractsManagerFactory factory, EthCallBatch ethCallBatch, ChannelEventIndexer eventIndexer) {
         contractsManager = factory.getMainContractManager();
+        this.ethCallBatch = ethCallBatch;
+        eventIndexer.subscribe(this::onChannelEvent);
+    }
+
+    private void onChannelEvent(ChannelEvent event) {
+        if (event.getType() == ChannelEvent.EventType.DELETED) {
+            if (allChannelsByAddress.remove(event.getChannelAddress()) != null) {
+                log.info("Incoming channel {} deleted", event.getChannelAddress());
+            }
+        } else {
+            get(event.getChannelAddress()).ifPresent(channel -> channel.updateBlockchainState(event));
+        }
     }
     
     public void setAddress(IncomingChannelState channel, Address channelAddress) {
@@ -49,7 +65,7 @@ public class IncomingChannelRegistry {
     private IncomingChannelState loadChannel(Address address) {
         log.info("Loading channel from blockchain: {}", address);
         ChannelContract contract = contractsManager.load(ChannelContract.class, address);
-        BlockchainChannel channel = BlockchainChannel.fromExistingContract(contractsManager.channelManager(), contract);
+        BlockchainChannel channel = BlockchainChannel.fromExistingContract(contractsManager.channelManager(), contract, ethCallBatch);
         return new IncomingChannelState(channel);
     }
 }
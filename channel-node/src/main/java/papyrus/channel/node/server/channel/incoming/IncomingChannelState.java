@@ -12,6 +12,7 @@ import org.web3j.abi.datatypes.generated.Uint256;
 
 import papyrus.channel.node.entity.ChannelProperties;
 import papyrus.channel.node.server.channel.BlockchainChannel;
+import papyrus.channel.node.server.channel.ChannelEvent;
 import papyrus.channel.node.server.channel.SignedChannelState;
 import papyrus.channel.node.server.channel.SignedTransfer;
 import papyrus.channel.node.server.channel.SignedTransferUnlock;
@@ -51,6 +52,7 @@ public class IncomingChannelState {
     public synchronized void updateSenderState(SignedChannelState receiverState) {
         if (this.senderState != null && this.senderState.getNonce() > receiverState.getNonce()) {
             log.debug("Ignoring old state update for channel {}", channel.getChannelAddress());
+            return;
         }
         this.senderState = receiverState;
     }
@@ -96,6 +98,30 @@ public class IncomingChannelState {
         return true;
     }
 
+    /**
+     * Applies change observed in blockchain.
+     */
+    public synchronized void updateBlockchainState(ChannelEvent event) {
+        switch (event.getType()) {
+            case CLOSE_REQUESTED:
+                channel.setCloseRequested(event.getBlockNumber());
+                break;
+            case CLOSED:
+                channel.setClosed(event.getBlockNumber());
+                channel.setClosingAddress(event.getClosingAddress());
+                break;
+            case SETTLED:
+                channel.setSettled(event.getBlockNumber());
+                break;
+            case AUDITED:
+                channel.setAudited(event.getBlockNumber());
+                break;
+            default:
+                return;
+        }
+        log.info("Incoming channel {} {} at block {}", channel.getChannelAddress(), event.getType(), event.getBlockNumber());
+    }
+
     public Address getChannelAddress() {
         return channel.getChannelAddress();
     }
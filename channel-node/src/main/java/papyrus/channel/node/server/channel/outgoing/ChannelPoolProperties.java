@@ -1,5 +1,7 @@
 package papyrus.channel.node.server.channel.outgoing;
 
+import java.math.BigInteger;
+
 import org.web3j.abi.datatypes.Address;
 import org.web3j.utils.Convert;
 
@@ -24,7 +26,11 @@ public class ChannelPoolProperties extends DataObject {
             request.getMinActiveChannels(), 
             request.getMaxActiveChannels(),
             false, 
-            new OutgoingChannelPolicy(Convert.toWei(request.getDeposit(), Convert.Unit.ETHER).toBigIntegerExact(), request.getCloseBlocksCount()), 
+            new OutgoingChannelPolicy(
+                Convert.toWei(request.getDeposit(), Convert.Unit.ETHER).toBigIntegerExact(), 
+                request.getCloseBlocksCount(),
+                request.getTopUpThreshold().isEmpty() ? BigInteger.ZERO : Convert.toWei(request.getTopUpThreshold(), Convert.Unit.ETHER).toBigIntegerExact()
+            ), 
             new ChannelProperties(request.getProperties())
         );
     }
@@ -36,7 +42,11 @@ public class ChannelPoolProperties extends DataObject {
             bean.getMinActive(), 
             bean.getMaxActive(),
             bean.isShutdown(), 
-            new OutgoingChannelPolicy(TokenConvert.toWei(bean.getDeposit()), bean.getCloseBlocksCount()), 
+            new OutgoingChannelPolicy(
+                TokenConvert.toWei(bean.getDeposit()), 
+                bean.getCloseBlocksCount(), 
+                bean.getTopUpThreshold() != null ? TokenConvert.toWei(bean.getTopUpThreshold()) : BigInteger.ZERO
+            ), 
             new ChannelProperties(bean)
         );
     }
@@ -1,17 +1,22 @@
 package papyrus.channel.node.server.channel.outgoing;
 
+import java.math.BigInteger;
 import java.security.SignatureException;
+import java.util.Optional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import org.web3j.abi.datatypes.Address;
 
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import papyrus.channel.node.ChannelStatusMessage;
 import papyrus.channel.node.ChannelStatusRequest;
 import papyrus.channel.node.ChannelStatusResponse;
 import papyrus.channel.node.OutgoingChannelClientGrpc;
+import papyrus.channel.node.PickChannelRequest;
+import papyrus.channel.node.PickChannelResponse;
 import papyrus.channel.node.RegisterTransfersRequest;
 import papyrus.channel.node.RegisterTransfersResponse;
 import papyrus.channel.node.TransferMessage;
@@ -20,6 +25,7 @@ import papyrus.channel.node.UnlockTransferRequest;
 import papyrus.channel.node.UnlockTransferResponse;
 import papyrus.channel.node.server.channel.SignedTransfer;
 import papyrus.channel.node.server.channel.SignedTransferUnlock;
+import papyrus.channel.node.server.ethereum.TokenConvert;
 
 @Component
 public class OutgoingChannelClientImpl extends OutgoingChannelClientGrpc.OutgoingChannelClientImplBase {
@@ -33,20 +39,38 @@ public class OutgoingChannelClientImpl extends OutgoingChannelClientGrpc.Outgoin
 
     @Override
     public void getChannels(ChannelStatusRequest request, StreamObserver<ChannelStatusResponse> responseObserver) {
-        ChannelStatusResponse.Builder builder = ChannelStatusResponse.newBuilder();
-        for (OutgoingChannelState state : manager.getChannels(new Address(request.getSenderAddress()), new Address(request.getReceiverAddress()))) {
-            if (state.isActive()) {
-                builder.addChannel(ChannelStatusMessage.newBuilder()
-                    .setActive(true)
-                    .setChannelAddress(state.getChannelAddress().toString())
-                    .setProperties(
-                        state.getChannel().getProperties().toMessage()
-                    )
-                    .build()
-                );
-            }
+        responseObserver.onNext(manager.getActiveChannels(new Address(request.getSenderAddress()), new Address(request.getReceiverAddress())));
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void pickChannel(PickChannelRequest request, StreamObserver<PickChannelResponse> responseObserver) {
+        BigInteger value;
+        try {
+            value = TokenConvert.toWei(request.getValue());
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(String.format("Illegal value: %s", request.getValue())).asException());
+            return;
+        }
+        if (value.signum() <= 0) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(String.format("Illegal value: %s", request.getValue())).asException());
+            return;
+        }
+        Optional<OutgoingChannelState.Reservation> reservation = manager.pickChannel(new Address(request.getSenderAddress()), new Address(request.getReceiverAddress()), value);
+        if (!reservation.isPresent()) {
+            responseObserver.onError(Status.RESOURCE_EXHAUSTED.withDescription("No active channel with enough capacity").asException());
+            return;
         }
-        responseObserver.onNext(builder.build());
+        OutgoingChannelState state = reservation.get().getChannel();
+        responseObserver.onNext(PickChannelResponse.newBuilder()
+            .setChannel(ChannelStatusMessage.newBuilder()
+                .setActive(true)
+                .setChannelAddress(state.getChannelAddress().toString())
+                .setProperties(state.getChannel().getProperties().toMessage())
+            )
+            .setReservationId(reservation.get().getId())
+            .build()
+        );
         responseObserver.onCompleted();
     }
 
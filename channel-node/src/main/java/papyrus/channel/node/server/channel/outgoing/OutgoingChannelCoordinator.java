@@ -1,22 +1,33 @@
 package papyrus.channel.node.server.channel.outgoing;
 
 import java.math.BigInteger;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Future;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 import java.util.stream.Stream;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.stereotype.Component;
 import org.web3j.abi.datatypes.Address;
 import org.web3j.abi.datatypes.generated.Uint256;
@@ -24,37 +35,73 @@ import org.web3j.crypto.Credentials;
 import org.web3j.protocol.core.methods.response.TransactionReceipt;
 
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
-import papyrus.channel.Error;
+import papyrus.channel.node.ChannelStatusMessage;
+import papyrus.channel.node.ChannelStatusResponse;
+import papyrus.channel.node.config.ChannelCoordinatorProperties;
 import papyrus.channel.node.config.EthereumConfig;
 import papyrus.channel.node.contract.ChannelContract;
 import papyrus.channel.node.contract.ChannelManagerContract;
 import papyrus.channel.node.entity.ChannelProperties;
 import papyrus.channel.node.server.channel.BlockchainChannel;
+import papyrus.channel.node.server.channel.ChannelEvent;
+import papyrus.channel.node.server.channel.ChannelEventIndexer;
 import papyrus.channel.node.server.channel.SignedChannelState;
 import papyrus.channel.node.server.ethereum.ContractsManager;
 import papyrus.channel.node.server.ethereum.ContractsManagerFactory;
+import papyrus.channel.node.server.ethereum.EthCallBatch;
 import papyrus.channel.node.server.ethereum.EthereumService;
 import papyrus.channel.node.server.ethereum.TokenService;
 import papyrus.channel.node.server.peer.PeerConnection;
 import papyrus.channel.node.server.peer.PeerConnectionManager;
+import papyrus.channel.node.util.BlockTimerWheel;
 import papyrus.channel.protocol.ChannelOpenedRequest;
 import papyrus.channel.protocol.ChannelOpenedResponse;
-import papyrus.channel.protocol.ChannelUpdateRequest;
 
+@EnableConfigurationProperties(ChannelCoordinatorProperties.class)
 @Component
 public class OutgoingChannelCoordinator {
     private static final Logger log = LoggerFactory.getLogger(OutgoingChannelCoordinator.class);
 
+    private static final int IDLE = 0;
+    private static final int SCHEDULED = 1;
+    private static final int RUNNING = 2;
+    private static final int RUNNING_WOKEN = 3;
+    
+    /** Cycle result: channel waits for an event or a block timer only */
+    private static final long PARKED = Long.MAX_VALUE;
+
     private final EthereumConfig ethereumConfig;
     private final OutgoingChannelRepository channelRepository;
     private final EthereumService ethereumService;
     private final ContractsManagerFactory contractsManagerFactory;
     private final PeerConnectionManager peerConnectionManager;
+    private final EthCallBatch ethCallBatch;
+    private final ChannelEventIndexer eventIndexer;
     
     private final Map<Address, ChannelCoordinator> coordinatorsMap = new ConcurrentHashMap<>();
-    private final Set<ChannelCoordinator> coordinators = Collections.synchronizedSet(new HashSet<>());
+    private final Map<Address, Map<Address, ParticipantChannels>> participantsIndex = new ConcurrentHashMap<>();
     private final ContractsManager mainContractManager;
+    private final ScheduledExecutorService scheduler;
+    private final BlockTimerWheel<ChannelCoordinator> blockTimers = new BlockTimerWheel<>(0);
+    private final LongConsumer blockListener = this::onNewBlock;
+    private final Consumer<ChannelEvent> eventListener = this::onChannelEvent;
+    private final long idleDelayMs;
+    private final int maxSyncsInFlight;
+    private final long syncTimeoutMs;
+    private final long syncRetryDelayMs;
+    private final long syncMinIntervalMs;
+    private final int syncMaxPendingTransfers;
+    private final long reservationTimeoutMs;
+    private final long topUpRetryDelayMs;
+    //moving average of time new channels need to become active, 0 if not measured
+    private volatile long averageOpenTimeMs;
+    private volatile ParticipantsListener participantsListener = (sender, receiver) -> {};
 
     @Autowired
     public OutgoingChannelCoordinator(
@@ -62,14 +109,38 @@ public class OutgoingChannelCoordinator {
         ContractsManagerFactory contractsManagerFactory,
         OutgoingChannelRepository channelRepository, 
         EthereumService ethereumService, 
-        PeerConnectionManager peerConnectionManager 
+        PeerConnectionManager peerConnectionManager,
+        EthCallBatch ethCallBatch,
+        ChannelEventIndexer eventIndexer,
+        ChannelCoordinatorProperties properties
     ) {
         this.ethereumConfig = ethereumConfig;
         this.contractsManagerFactory = contractsManagerFactory;
         this.channelRepository = channelRepository;
         this.ethereumService = ethereumService;
         this.peerConnectionManager = peerConnectionManager;
+        this.ethCallBatch = ethCallBatch;
+        this.eventIndexer = eventIndexer;
         mainContractManager = contractsManagerFactory.getContractManager(ethereumConfig.getMainAddress());
+        idleDelayMs = properties.getIdleDelay().toMillis();
+        maxSyncsInFlight = properties.getSyncsInFlight();
+        syncTimeoutMs = properties.getSyncTimeout().toMillis();
+        syncRetryDelayMs = properties.getSyncRetryDelay().toMillis();
+        syncMinIntervalMs = properties.getSyncMinInterval().toMillis();
+        syncMaxPendingTransfers = properties.getSyncMaxPendingTransfers();
+        reservationTimeoutMs = properties.getReservationTimeout().toMillis();
+        topUpRetryDelayMs = properties.getTopUpRetryDelay().toMillis();
+        scheduler = Executors.newScheduledThreadPool(
+            properties.getThreads(),
+            new ThreadFactoryBuilder().setNameFormat("Channel coordinator %d").setDaemon(true).build()
+        );
+        log.info("Outgoing channels coordinated by {} threads", properties.getThreads());
+    }
+
+    @PostConstruct
+    public void init() {
+        ethereumService.getBlockClock().subscribe(blockListener);
+        eventIndexer.subscribe(eventListener);
     }
     
     public void register(OutgoingChannelState channel, OutgoingChannelPolicy policy) {
@@ -77,22 +148,31 @@ public class OutgoingChannelCoordinator {
         Address address = channel.getChannelAddress();
         if (address != null) {
             if (coordinatorsMap.putIfAbsent(address, coordinator) == null) {
-                coordinators.add(coordinator);
-                coordinator.start();
+                coordinator.setRegistered(true);
+                coordinator.wakeUp();
             }
         } else {
             Preconditions.checkState(channel.getStatus() == OutgoingChannelState.Status.NEW);
-            coordinators.add(coordinator);
-            coordinator.start();
+            coordinator.setRegistered(true);
+            coordinator.wakeUp();
         }
     }
 
+    /**
+     * Listener is notified when a channel of sender and receiver is registered, removed, becomes (in)active 
+     * or starts closing.
+     */
+    void setParticipantsListener(ParticipantsListener participantsListener) {
+        this.participantsListener = participantsListener;
+    }
+
     public void setPolicy(OutgoingChannelState channel, OutgoingChannelPolicy policy) {
         if (channel.getChannelAddress() != null) {
             ChannelCoordinator coordinator = coordinatorsMap.get(channel.getChannelAddress());
             if (coordinator != null) coordinator.setPolicy(policy);
         } else {
-            for (ChannelCoordinator coordinator : coordinators) {
+            ParticipantChannels participants = getParticipants(channel.getChannel().getSenderAddress(), channel.getChannel().getReceiverAddress());
+            for (ChannelCoordinator coordinator : participants.coordinators) {
                 if (coordinator.channel == channel) {
                     coordinator.setPolicy(policy);
                     break;
@@ -106,45 +186,217 @@ public class OutgoingChannelCoordinator {
     }
 
     public Stream<OutgoingChannelState> getByParticipants(Address senderAddress, Address receiverAddress) {
-        return all()
-            .filter(c -> c.getChannel().getSenderAddress().equals(senderAddress))
-            .filter(c -> c.getChannel().getReceiverAddress().equals(receiverAddress))
-            ;
+        return getParticipants(senderAddress, receiverAddress).coordinators.stream().map(c -> c.channel);
+    }
+
+    /**
+     * @return moving average of time new channels needed to become active, 0 if no channel was opened yet
+     */
+    public long getAverageOpenTimeMs() {
+        return averageOpenTimeMs;
+    }
+
+    private synchronized void recordOpenTime(long openTimeMs) {
+        long average = averageOpenTimeMs;
+        averageOpenTimeMs = average == 0 ? openTimeMs : (average * 3 + openTimeMs) / 4;
+    }
+
+    public int getActiveCount(Address senderAddress, Address receiverAddress) {
+        return getParticipants(senderAddress, receiverAddress).activeCount.get();
+    }
+
+    /**
+     * @return number of channels which are not closed and not closing
+     */
+    public int getNotClosingCount(Address senderAddress, Address receiverAddress) {
+        return getParticipants(senderAddress, receiverAddress).notClosingCount.get();
+    }
+
+    /**
+     * Picks active channel of sender and receiver with enough free capacity and least reserved transfers, ties are 
+     * resolved by larger free capacity. Value is reserved in picked channel.
+     */
+    public Optional<OutgoingChannelState.Reservation> pickChannel(Address senderAddress, Address receiverAddress, BigInteger value) {
+        ParticipantChannels participants = getParticipants(senderAddress, receiverAddress);
+        long now = System.currentTimeMillis();
+        //channel could be picked concurrently by another request
+        for (int attempt = 0; attempt < 3; attempt++) {
+            OutgoingChannelState best = null;
+            int bestReservations = 0;
+            BigInteger bestCapacity = null;
+            for (ChannelCoordinator coordinator : participants.coordinators) {
+                OutgoingChannelState channel = coordinator.channel;
+                if (!channel.isActive()) continue;
+                channel.expireReservations(now);
+                BigInteger capacity = channel.getFreeCapacity();
+                if (capacity.compareTo(value) < 0) continue;
+                int reservations = channel.getReservationsCount();
+                if (best == null || reservations < bestReservations || reservations == bestReservations && capacity.compareTo(bestCapacity) > 0) {
+                    best = channel;
+                    bestReservations = reservations;
+                    bestCapacity = capacity;
+                }
+            }
+            if (best == null) return Optional.empty();
+            Optional<OutgoingChannelState.Reservation> reservation = best.reserve(value, now + reservationTimeoutMs);
+            if (reservation.isPresent()) return reservation;
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return active channels of sender and receiver, snapshot is shared between calls until some channel changes
+     */
+    public ChannelStatusResponse getActiveChannels(Address senderAddress, Address receiverAddress) {
+        return getParticipants(senderAddress, receiverAddress).getStatusResponse();
+    }
+
+    private ParticipantChannels getParticipants(Address senderAddress, Address receiverAddress) {
+        return participantsIndex
+            .computeIfAbsent(senderAddress, s -> new ConcurrentHashMap<>())
+            .computeIfAbsent(receiverAddress, r -> new ParticipantChannels());
     }
 
     public OutgoingChannelState loadChannel(Address address) {
         ChannelContract contract = mainContractManager.load(ChannelContract.class, address);
-        BlockchainChannel channel = BlockchainChannel.fromExistingContract(mainContractManager.channelManager(), contract);
+        BlockchainChannel channel = BlockchainChannel.fromExistingContract(mainContractManager.channelManager(), contract, ethCallBatch);
         return new OutgoingChannelState(channel);
     }
 
     public Stream<OutgoingChannelState> all() {
-        return coordinators.stream().map(c -> c.channel);
+        return participantsIndex.values().stream()
+            .flatMap(m -> m.values().stream())
+            .flatMap(p -> p.coordinators.stream())
+            .map(c -> c.channel);
+    }
+
+    private void onNewBlock(long blockNumber) {
+        List<ChannelCoordinator> expired;
+        synchronized (blockTimers) {
+            expired = blockTimers.advance(blockNumber);
+        }
+        for (ChannelCoordinator coordinator : expired) {
+            coordinator.blockReached(blockNumber);
+        }
+    }
+
+    /**
+     * Event is applied to the channel by its next cycle, so it does not race with transitions.
+     */
+    private void onChannelEvent(ChannelEvent event) {
+        ChannelCoordinator coordinator = coordinatorsMap.get(event.getChannelAddress());
+        if (coordinator != null) {
+            coordinator.events.add(event);
+            coordinator.wakeUp();
+        }
+    }
+
+    private long currentBlock() {
+        return ethereumService.getBlockNumber();
+    }
+
+    private void unregister(ChannelCoordinator coordinator) {
+        Address address = coordinator.channel.getChannelAddress();
+        if (address != null) {
+            coordinatorsMap.remove(address, coordinator);
+        }
+        coordinator.setRegistered(false);
+    }
+
+    interface ParticipantsListener {
+        void channelsChanged(Address senderAddress, Address receiverAddress);
     }
 
     @PreDestroy
     public void destroy() throws InterruptedException {
-        for (Thread thread : coordinatorsMap.values()) {
-            thread.interrupt();
+        ethereumService.getBlockClock().unsubscribe(blockListener);
+        eventIndexer.unsubscribe(eventListener);
+        scheduler.shutdownNow();
+        if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Channel coordinators were not stopped in time");
         }
     }
 
-    private static String watcherName(OutgoingChannelState channel) {
-        return "Channel watcher " + channel.getAddressSafe() + " from:" + channel.getChannel().getSenderAddress() + " to:" + channel.getChannel().getReceiverAddress();
+    /**
+     * Channels of one sender and receiver with incremental counters and cached status snapshot, rebuilt on first 
+     * request after a change.
+     */
+    private static class ParticipantChannels {
+        final Set<ChannelCoordinator> coordinators = ConcurrentHashMap.newKeySet();
+        final AtomicInteger activeCount = new AtomicInteger();
+        final AtomicInteger notClosingCount = new AtomicInteger();
+        volatile ChannelStatusResponse statusResponse = ChannelStatusResponse.getDefaultInstance();
+        volatile boolean changed;
+
+        void invalidate() {
+            changed = true;
+        }
+
+        ChannelStatusResponse getStatusResponse() {
+            if (changed) {
+                synchronized (this) {
+                    if (changed) {
+                        //changes made while building are picked up by next request
+                        changed = false;
+                        statusResponse = buildStatusResponse();
+                    }
+                }
+            }
+            return statusResponse;
+        }
+
+        private ChannelStatusResponse buildStatusResponse() {
+            ChannelStatusResponse.Builder builder = ChannelStatusResponse.newBuilder();
+            for (ChannelCoordinator coordinator : coordinators) {
+                OutgoingChannelState state = coordinator.channel;
+                if (state.isActive()) {
+                    builder.addChannel(ChannelStatusMessage.newBuilder()
+                        .setActive(true)
+                        .setChannelAddress(state.getChannelAddress().toString())
+                        .setProperties(
+                            state.getChannel().getProperties().toMessage()
+                        )
+                        .build()
+                    );
+                }
+            }
+            return builder.build();
+        }
     }
 
-    private class ChannelCoordinator extends Thread {
+    /**
+     * State machine of single outgoing channel. It does not own a thread: each cycle is a task on the shared 
+     * scheduler. Cycles are started by {@link #wakeUp()} on events or by idle timer and never overlap.
+     */
+    private class ChannelCoordinator implements Runnable, OutgoingChannelState.Listener {
         final OutgoingChannelState channel;
         final TokenService tokenService;
         final Credentials credentials;
         final ChannelProperties channelProperties;
         final Address receiverAddress;
         final ContractsManager contractManager;
+        final ParticipantChannels participants;
+        final AtomicInteger cycleState = new AtomicInteger(IDLE);
+        final AtomicInteger syncsInFlight = new AtomicInteger();
+        //failed state updates in a row
+        final AtomicInteger syncFailures = new AtomicInteger();
+        //receiver notification of opened channel: in flight, then accepted
+        final AtomicBoolean notifyingOpened = new AtomicBoolean();
+        volatile boolean openedNotified;
+        final Queue<ChannelEvent> events = new ConcurrentLinkedQueue<>();
         volatile OutgoingChannelPolicy policy;
+        volatile ScheduledFuture<?> idleTimer;
+        volatile long lastSyncTime;
+        //guarded by blockTimers
+        long timerBlock;
         BigInteger approvedDeposit;
+        long lastTopUpTime;
+        //flags counted in participants, guarded by this
+        boolean registered;
+        boolean active;
+        boolean notClosing;
 
         public ChannelCoordinator(OutgoingChannelState channel, OutgoingChannelPolicy policy) {
-            super(watcherName(channel));
             this.channel = channel;
             this.policy = policy;
             Address senderAddress = channel.getChannel().getSenderAddress();
@@ -153,55 +405,204 @@ public class OutgoingChannelCoordinator {
             tokenService = contractManager.getTokenService();
             channelProperties = channel.getChannel().getProperties();
             receiverAddress = channel.getChannel().getReceiverAddress();
+            participants = getParticipants(senderAddress, receiverAddress);
+            channel.setListener(this);
         }
 
         public void setPolicy(OutgoingChannelPolicy policy) {
-            this.policy = policy;
+            if (!policy.equals(this.policy)) {
+                this.policy = policy;
+                wakeUp();
+            }
+        }
+
+        /**
+         * Only first transfer of coalescing window wakes coordinator up, next ones wait for the window to close 
+         * unless too many transfers are pending.
+         */
+        @Override
+        public void transfersChanged() {
+            int pending = channel.getPendingTransfers();
+            if (pending <= 1 || pending >= syncMaxPendingTransfers) {
+                wakeUp();
+            }
+        }
+
+        @Override
+        public void statusChanged() {
+            updateFlags();
+            wakeUp();
+        }
+
+        synchronized void setRegistered(boolean registered) {
+            if (registered) {
+                participants.coordinators.add(this);
+            } else {
+                participants.coordinators.remove(this);
+            }
+            this.registered = registered;
+            participants.invalidate();
+            updateFlags();
+        }
+
+        /**
+         * Updates participants counters if channel became (in)active or started closing.
+         */
+        synchronized void updateFlags() {
+            boolean active = registered && channel.isActive();
+            boolean notClosing = registered && !channel.isCloseRequested() && channel.getStatus() != OutgoingChannelState.Status.DISPOSABLE;
+            if (active == this.active && notClosing == this.notClosing) return;
+            if (active != this.active) {
+                participants.activeCount.addAndGet(active ? 1 : -1);
+                participants.invalidate();
+            }
+            if (notClosing != this.notClosing) {
+                participants.notClosingCount.addAndGet(notClosing ? 1 : -1);
+            }
+            this.active = active;
+            this.notClosing = notClosing;
+            participantsListener.channelsChanged(channel.getChannel().getSenderAddress(), receiverAddress);
+        }
+
+        /**
+         * @return first block when next blockchain transition becomes possible, 0 if channel does not wait for a block
+         */
+        long blockDeadline() {
+            BlockchainChannel blockchainChannel = channel.getChannel();
+            ChannelProperties properties = blockchainChannel.getProperties();
+            switch (channel.getStatus()) {
+                case ACTIVE:
+                    return !channel.isNeedClose() && policy.getCloseBlocksCount() > 0 ? channel.getOpenBlock() + policy.getCloseBlocksCount() + 1 : 0;
+                case CLOSE_REQUESTED:
+                    return blockchainChannel.getCloseRequested() + properties.getCloseTimeout();
+                case CLOSED:
+                    return blockchainChannel.getClosed() + properties.getSettleTimeout();
+                case SETTLED:
+                    return blockchainChannel.getClosed() + properties.getAuditTimeout() + 1;
+                default:
+                    return 0;
+            }
+        }
+
+        /**
+         * @return false if deadline already reached
+         */
+        boolean scheduleBlockTimer(long deadline) {
+            synchronized (blockTimers) {
+                if (timerBlock == deadline) return true;
+                if (!blockTimers.schedule(deadline, this)) return false;
+                timerBlock = deadline;
+                return true;
+            }
+        }
+
+        void blockReached(long blockNumber) {
+            synchronized (blockTimers) {
+                //timer could be rescheduled to later block, older one still fires
+                if (timerBlock > blockNumber) return;
+                timerBlock = 0;
+            }
+            wakeUp();
+        }
+
+        /**
+         * Requests a cycle as soon as possible. If cycle is running now, another one will follow it.
+         */
+        void wakeUp() {
+            while (true) {
+                int s = cycleState.get();
+                if (s == IDLE) {
+                    if (cycleState.compareAndSet(IDLE, SCHEDULED)) {
+                        ScheduledFuture<?> timer = idleTimer;
+                        if (timer != null) timer.cancel(false);
+                        submit();
+                        return;
+                    }
+                } else if (s == RUNNING) {
+                    if (cycleState.compareAndSet(RUNNING, RUNNING_WOKEN)) return;
+                } else {
+                    //cycle is already pending
+                    return;
+                }
+            }
+        }
+
+        private void submit() {
+            try {
+                scheduler.execute(this);
+            } catch (RejectedExecutionException e) {
+                log.debug("Coordinator stopped, channel {} will not be processed", channel.getAddressSafe());
+            }
         }
 
         @Override
         public void run() {
-            while (!Thread.interrupted()) {
+            if (!cycleState.compareAndSet(SCHEDULED, RUNNING)) return;
+            long delayMs = idleDelayMs;
+            try {
+                delayMs = cycle();
+            } catch (Throwable e) {
+                log.error("Cycle failed", e);
+            }
+            updateFlags();
+            if (delayMs <= 0 || !cycleState.compareAndSet(RUNNING, IDLE)) {
+                cycleState.set(SCHEDULED);
+                submit();
+            } else if (delayMs != PARKED) {
                 try {
-                    boolean updated = false;
-                    OutgoingChannelState.Status status = channel.getStatus();
-                    try {
-                        if (channel.checkTransitionInProgress()) continue;
-
-                        if (channel.isNeedsSync()) {
-                            //TODO make async call
-                            syncChannel();
-                        }
-                        
-                        if (!channel.isCloseRequested() && policy.isNone()) {
-                            log.info("No policy defined for channel {}, closing it", channel.getAddressSafe());
-                            channel.setNeedClose();
-                        } else {
-                            makeTransitions();
-                        }
+                    idleTimer = scheduler.schedule(this::wakeUp, delayMs, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    log.debug("Coordinator stopped, channel {} will not be processed", channel.getAddressSafe());
+                }
+            }
+        }
 
-                        if (channel.getStatus() != status) {
-                            updated = true;
-                            save();
-                            log.info("Outgoing channel:{} to receiver:{} updated from:{} to:{}", channel.getAddressSafe(), channel.getChannel().getReceiverAddress(), status, channel.getStatus());
-                        }
-                    } catch (Exception e) {
-                        log.info("Channel {} update completed exceptionally", channel.getAddressSafe(), e);
-                    }
-                    if (!updated) {
-                        Thread.sleep(1000L);
+        /**
+         * @return delay before next cycle in ms, 0 if channel status changed and next cycle should start immediately,
+         * {@link #PARKED} if channel waits for a block timer
+         */
+        private long cycle() {
+            OutgoingChannelState.Status status = channel.getStatus();
+            long delayMs = idleDelayMs;
+            try {
+                for (ChannelEvent event; (event = events.poll()) != null; ) {
+                    channel.updateBlockchainState(event);
+                }
+
+                if (channel.isNeedsSend()) {
+                    delayMs = Math.min(delayMs, syncChannel());
+                }
+
+                if (channel.checkTransitionInProgress()) return delayMs;
+
+                if (!channel.isCloseRequested() && policy.isNone()) {
+                    log.info("No policy defined for channel {}, closing it", channel.getAddressSafe());
+                    channel.setNeedClose();
+                } else {
+                    makeTransitions();
+                }
+
+                if (channel.getStatus() != status) {
+                    save();
+                    log.info("Outgoing channel:{} to receiver:{} updated from:{} to:{}", channel.getAddressSafe(), channel.getChannel().getReceiverAddress(), status, channel.getStatus());
+                    if (channel.getStatus() == OutgoingChannelState.Status.ACTIVE && channel.getOpenDurationMs() > 0) {
+                        recordOpenTime(channel.getOpenDurationMs());
                     }
-                } catch (InterruptedException e) {
-                    break;
-                } catch (Throwable e) {
-                    log.error("Cycle failed", e);
-                    try {
-                        Thread.sleep(1000L);
-                    } catch (InterruptedException e1) {
-                        break;
+                    if (channel.getStatus() == OutgoingChannelState.Status.DISPOSABLE) {
+                        unregister(this);
+                        return PARKED;
                     }
+                    return 0;
                 }
+
+                long deadline = blockDeadline();
+                if (deadline > 0 && delayMs == idleDelayMs && !channel.isNeedsSend() && scheduleBlockTimer(deadline)) {
+                    return PARKED;
+                }
+            } catch (Exception e) {
+                log.info("Channel {} update completed exceptionally", channel.getAddressSafe(), e);
             }
+            return delayMs;
         }
 
         private void makeTransitions() throws Exception {
@@ -216,7 +617,9 @@ public class OutgoingChannelCoordinator {
                     break;
                 case CREATED:
                     if (needClose) {
-                        channel.doRequestClose();
+                        //approved deposit will not be transferred
+                        tokenService.releaseDeposit(channel.getChannelAddress());
+                        channel.doRequestClose(contractManager);
                     } else {
                         approvedDeposit = policy.getDeposit();
                         channel.approveDeposit(tokenService, approvedDeposit);
@@ -227,68 +630,151 @@ public class OutgoingChannelCoordinator {
                         approvedDeposit = tokenService.allowance(channel.getChannelAddress());
                         if (approvedDeposit.compareTo(policy.getDeposit()) < 0) {
                             log.info("Contract {} approved deposit is less that needed. Approved: %s, needed: %s", channel.getAddressSafe(), approvedDeposit, policy.getDeposit());
+                            tokenService.releaseDeposit(channel.getChannelAddress());
                             channel.resetDepositApproval();
                             break;
                         }
                     }
-                    channel.deposit(approvedDeposit);
+                    channel.deposit(contractManager, approvedDeposit);
                     break;
                 case OPENED:
                     if (needClose) {
-                        channel.doRequestClose();
+                        channel.doRequestClose(contractManager);
+                    } else if (openedNotified) {
+                        channel.setActive();
                     } else {
-                        PeerConnection connection = peerConnectionManager.getConnection(receiverAddress);
-                        ChannelOpenedResponse response = connection.getChannelPeer().opened(ChannelOpenedRequest.newBuilder().setChannelId(channel.getChannelAddress().toString()).build());
-                        if (response.hasError()) {
-                            log.warn("Failed to notify counterparty {}", response.getError().getMessage());
-                        } else {
-                            channel.setActive();
-                        }
+                        notifyOpened();
                     }
                     break;
                 case ACTIVE:
                     if (!needClose && policy.getCloseBlocksCount() > 0) {
-                        long ageBlocks = ethereumService.getBlockNumber() - channel.getOpenBlock();
+                        long ageBlocks = currentBlock() - channel.getOpenBlock();
                         if (ageBlocks > policy.getCloseBlocksCount()) {
                             log.info("Channel {} age is {}, closing", channel.getAddressSafe(), ageBlocks);
                             needClose = true;
                         }
                     }
                     if (needClose) {
-                        channel.doRequestClose();
+                        channel.doRequestClose(contractManager);
+                    } else if (policy.isTopUpNeeded(channel.getCapacity()) && System.currentTimeMillis() - lastTopUpTime > topUpRetryDelayMs) {
+                        //failed top-up is retried after retry delay
+                        lastTopUpTime = System.currentTimeMillis();
+                        log.info("Channel {} capacity {} is below {}, adding deposit {}", channel.getAddressSafe(), channel.getCapacity(), policy.getTopUpThreshold(), policy.getDeposit());
+                        channel.topUp(contractManager, policy.getDeposit());
                     }
                     break;
                 case CLOSE_REQUESTED:
-                    channel.closeIfPossible(ethereumService.getBlockNumber());
+                    channel.closeIfPossible(contractManager, currentBlock());
                     break;
                 case CLOSED:
-                    channel.settleIfPossible(ethereumService.getBlockNumber());
+                    channel.settleIfPossible(contractManager, currentBlock());
                     break;
                 case SETTLED:
+                    if (channel.getChannel().getAudited() > 0) {
+                        log.info("Channel {} audited, disposing", channel.getAddressSafe());
+                        channel.makeDisposable();
+                    } else if (currentBlock() >= blockDeadline()) {
+                        log.info("Channel {} audit timeout passed, disposing", channel.getAddressSafe());
+                        channel.makeDisposable();
+                    }
                     break;
                 case DISPUTING:
                     break;
             }
         }
 
-        private void syncChannel() {
+        /**
+         * Sends current state to receiver by the state stream shared with other channels to it, without waiting
+         * for ack. Up to {@link #maxSyncsInFlight} updates may be in flight, receiver ignores updates with nonce
+         * lower than already received.
+         * <br>
+         * Transfers registered within {@link #syncMinIntervalMs} after previous update are coalesced into one 
+         * signed state.
+         * 
+         * @return delay in ms before the state could be sent 
+         */
+        private long syncChannel() {
+            long waitMs = lastSyncTime + syncMinIntervalMs - System.currentTimeMillis();
+            if (waitMs > 0 && channel.getPendingTransfers() < syncMaxPendingTransfers) {
+                return waitMs;
+            }
+            if (syncsInFlight.get() >= maxSyncsInFlight) {
+                //woken up when an update completes
+                log.debug("Channel {} has {} state updates in flight, waiting", channel.getAddressSafe(), maxSyncsInFlight);
+                return idleDelayMs;
+            }
             PeerConnection connection = peerConnectionManager.getConnection(receiverAddress);
+            lastSyncTime = System.currentTimeMillis();
             SignedChannelState state = channel.createState();
+            log.debug("Channel {} sending state {}, coalesced transfers: {}", channel.getAddressSafe(), state.getNonce(), channel.getLastCoalescedTransfers());
             state.sign(credentials.getEcKeyPair());
-            Error error = connection.getChannelPeer().update(
-                ChannelUpdateRequest.newBuilder()
-                    .setState(state.toMessage())
-                    .build()
-            ).getError();
-            if (error.getMessage().isEmpty()) {
-                channel.syncCompleted(state);
-                save();
+            syncsInFlight.incrementAndGet();
+            CompletableFuture<Void> ack = connection.getStateStream().send(state.toMessage());
+            ScheduledFuture<?> timeout = scheduler.schedule(
+                () -> ack.completeExceptionally(new TimeoutException("No ack in " + syncTimeoutMs + " ms")),
+                syncTimeoutMs, TimeUnit.MILLISECONDS
+            );
+            ack.whenComplete((r, error) -> {
+                timeout.cancel(false);
+                syncsInFlight.decrementAndGet();
+                if (error == null) {
+                    syncFailures.set(0);
+                    channel.syncCompleted(state);
+                    saveAsync();
+                    if (channel.isNeedsSend()) wakeUp();
+                } else {
+                    log.warn("Channel {} state {} sync failed: {}", channel.getAddressSafe(), state.getNonce(), error.toString());
+                    channel.syncFailed(state);
+                    //cycle may have parked the channel until a block deadline meanwhile
+                    scheduleSyncRetry(syncFailures.incrementAndGet());
+                }
+            });
+            return idleDelayMs;
+        }
+
+        /**
+         * Notifies receiver that channel is opened without blocking the cycle, channel becomes active on next cycle
+         * after receiver accepted it. Failed notification is sent again on idle cycle.
+         */
+        private void notifyOpened() {
+            if (!notifyingOpened.compareAndSet(false, true)) return;
+            PeerConnection connection = peerConnectionManager.getConnection(receiverAddress);
+            ChannelOpenedRequest request = ChannelOpenedRequest.newBuilder().setChannelId(channel.getChannelAddress().toString()).build();
+            ListenableFuture<ChannelOpenedResponse> response = connection.getChannelPeerFuture()
+                .withDeadlineAfter(syncTimeoutMs, TimeUnit.MILLISECONDS)
+                .opened(request);
+            Futures.addCallback(response, new FutureCallback<ChannelOpenedResponse>() {
+                @Override
+                public void onSuccess(ChannelOpenedResponse result) {
+                    if (result.hasError()) {
+                        log.warn("Failed to notify counterparty {}", result.getError().getMessage());
+                    } else {
+                        openedNotified = true;
+                        wakeUp();
+                    }
+                    notifyingOpened.set(false);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    log.warn("Failed to notify counterparty of channel {}: {}", channel.getAddressSafe(), t.toString());
+                    notifyingOpened.set(false);
+                }
+            }, MoreExecutors.directExecutor());
+        }
+
+        private void scheduleSyncRetry(int failures) {
+            long delayMs = Math.min(idleDelayMs, syncRetryDelayMs << Math.min(failures - 1, 20));
+            try {
+                scheduler.schedule(this::wakeUp, delayMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                log.debug("Coordinator stopped, channel {} state will not be sent again", channel.getAddressSafe());
             }
         }
 
         private void startCreating() {
             Preconditions.checkState(channel.getChannel().getContract() == null);
-            Future<TransactionReceipt> future = contractManager.channelManager().newChannel(
+            CompletableFuture<TransactionReceipt> future = contractManager.execute(contractManager.channelManager(), "newChannel",
                 channel.getChannel().getClientAddress(),
                 receiverAddress,
                 new Uint256(channelProperties.getCloseTimeout()),
@@ -297,23 +783,17 @@ public class OutgoingChannelCoordinator {
                 channelProperties.getAuditor().orElse(Address.DEFAULT)
             );
             //todo store transaction hash instead of future
-            channel.startDeploying(CompletableFuture.supplyAsync(() -> {
-                try {
-                    TransactionReceipt receipt = future.get();
-                    List<ChannelManagerContract.ChannelNewEventResponse> events = contractManager.channelManager().getChannelNewEvents(receipt);
-                    if (events.isEmpty()) {
-                        throw new IllegalStateException("Channel contract was not created");
-                    }
-                    Address address = events.get(events.size() - 1).channel_address;
-                    ChannelContract contract = contractManager.load(ChannelContract.class, address);
-                    contract.setTransactionReceipt(receipt);
-                    channel.getChannel().linkNewContract(contract);
-                    setName(watcherName(channel));
-                    coordinatorsMap.put(address, this);
-                    return contract;
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
+            channel.startDeploying(future.thenApply(receipt -> {
+                List<ChannelManagerContract.ChannelNewEventResponse> events = contractManager.channelManager().getChannelNewEvents(receipt);
+                if (events.isEmpty()) {
+                    throw new IllegalStateException("Channel contract was not created");
                 }
+                Address address = events.get(events.size() - 1).channel_address;
+                ChannelContract contract = contractManager.load(ChannelContract.class, address);
+                contract.setTransactionReceipt(receipt);
+                channel.getChannel().linkNewContract(contract);
+                coordinatorsMap.put(address, this);
+                return contract;
             }));
         }
 
@@ -323,5 +803,20 @@ public class OutgoingChannelCoordinator {
             }
         }
 
+        private void saveAsync() {
+            if (channel.getChannelAddress() != null) {
+                Futures.addCallback(channelRepository.saveAsync(channel.getPersistentState()), new FutureCallback<Void>() {
+                    @Override
+                    public void onSuccess(Void result) {
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        log.warn("Failed to save channel {}", channel.getAddressSafe(), t);
+                    }
+                }, MoreExecutors.directExecutor());
+            }
+        }
+
     }
 }
@@ -5,14 +5,16 @@ import java.math.BigInteger;
 import papyrus.channel.node.entity.DataObject;
 
 public class OutgoingChannelPolicy extends DataObject {
-    public static final OutgoingChannelPolicy NONE = new OutgoingChannelPolicy(BigInteger.ZERO, 0);
+    public static final OutgoingChannelPolicy NONE = new OutgoingChannelPolicy(BigInteger.ZERO, 0, BigInteger.ZERO);
     
     private final BigInteger deposit;
     private final long closeBlocksCount;
+    private final BigInteger topUpThreshold;
 
-    public OutgoingChannelPolicy(BigInteger deposit, long closeBlocksCount) {
+    public OutgoingChannelPolicy(BigInteger deposit, long closeBlocksCount, BigInteger topUpThreshold) {
         this.deposit = deposit;
         this.closeBlocksCount = closeBlocksCount;
+        this.topUpThreshold = topUpThreshold;
     }
 
     public BigInteger getDeposit() {
@@ -23,6 +25,17 @@ public class OutgoingChannelPolicy extends DataObject {
         return closeBlocksCount;
     }
 
+    /**
+     * @return remaining capacity of active channel below which deposit is added again, zero if top-up disabled
+     */
+    public BigInteger getTopUpThreshold() {
+        return topUpThreshold;
+    }
+
+    public boolean isTopUpNeeded(BigInteger capacity) {
+        return topUpThreshold.signum() > 0 && capacity.compareTo(topUpThreshold) < 0;
+    }
+
     public boolean isNone() {
         return deposit.signum() == 0;
     }
@@ -33,6 +33,8 @@ public class OutgoingChannelPoolBean {
     private long auditTimeout;
     @Column(name = "close_blocks_count")
     private long closeBlocksCount;
+    @Column(name = "top_up_threshold")
+    private BigDecimal topUpThreshold;
     private boolean shutdown;
 
     public OutgoingChannelPoolBean() {
@@ -48,6 +50,7 @@ public class OutgoingChannelPoolBean {
         this.closeTimeout = config.getBlockchainProperties().getCloseTimeout();
         this.settleTimeout = config.getBlockchainProperties().getSettleTimeout();
         this.closeBlocksCount = config.getPolicy().getCloseBlocksCount();
+        this.topUpThreshold = TokenConvert.fromWei(config.getPolicy().getTopUpThreshold());
     }
 
     public Address getSender() {
@@ -122,6 +125,14 @@ public class OutgoingChannelPoolBean {
         this.closeBlocksCount = closeBlocksCount;
     }
 
+    public BigDecimal getTopUpThreshold() {
+        return topUpThreshold;
+    }
+
+    public void setTopUpThreshold(BigDecimal topUpThreshold) {
+        this.topUpThreshold = topUpThreshold;
+    }
+
     public long getAuditTimeout() {
         return auditTimeout;
     }
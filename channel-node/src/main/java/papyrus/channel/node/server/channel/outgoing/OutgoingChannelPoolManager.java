@@ -1,16 +1,26 @@
 package papyrus.channel.node.server.channel.outgoing;
 
+import java.math.BigInteger;
 import java.net.UnknownHostException;
 import java.security.SignatureException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import javax.annotation.PreDestroy;
@@ -25,22 +35,34 @@ import org.springframework.stereotype.Component;
 import org.web3j.abi.datatypes.Address;
 
 import com.datastax.driver.core.exceptions.NoHostAvailableException;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import papyrus.channel.node.ChannelStatusResponse;
+import papyrus.channel.node.config.ChannelPoolManagerProperties;
 import papyrus.channel.node.config.EthProperties;
 import papyrus.channel.node.config.EthereumConfig;
 import papyrus.channel.node.server.channel.SignedTransfer;
 import papyrus.channel.node.server.channel.SignedTransferUnlock;
 import papyrus.channel.node.server.channel.TransferRepository;
 import papyrus.channel.node.server.channel.TransferUnlockRepository;
+import papyrus.channel.node.server.ethereum.EthereumService;
 import papyrus.channel.node.util.Retriable;
 
-@EnableConfigurationProperties(EthProperties.class)
+@EnableConfigurationProperties({EthProperties.class, ChannelPoolManagerProperties.class})
 @Component
 public class OutgoingChannelPoolManager {
     private static final Logger log = LoggerFactory.getLogger(OutgoingChannelPoolManager.class);
     
     private final Map<Address, Map<Address, ChannelPoolProperties>> channelPools = new ConcurrentHashMap<>();
+    //pools (sender, receiver) to be checked, each pool is queued once
+    private final BlockingQueue<Map.Entry<Address, Address>> changedPools = new LinkedBlockingQueue<>();
+    private final Set<Map.Entry<Address, Address>> changedPoolsSet = ConcurrentHashMap.newKeySet();
+    //policies already applied to channels of the pool
+    private final Map<Map.Entry<Address, Address>, OutgoingChannelPolicy> appliedPolicies = new ConcurrentHashMap<>();
+    private final Map<Map.Entry<Address, Address>, TransferRate> transferRates = new ConcurrentHashMap<>();
     private final Thread watchThread;
+    private volatile boolean ready;
 
     @Autowired
     private EthereumConfig ethereumConfig;
@@ -54,69 +76,139 @@ public class OutgoingChannelPoolManager {
     private TransferRepository transferRepository;
     @Autowired
     private TransferUnlockRepository unlockRepository;
+    @Autowired
+    private EthereumService ethereumService;
+    @Autowired
+    private ChannelPoolManagerProperties properties;
 
     public OutgoingChannelPoolManager() {
         this.watchThread = new Thread(this::cycle,"Channel pool watcher");
     }
 
+    /**
+     * Processes pools changed since last check: channel registered or removed, channel became (in)active or 
+     * started closing, pool added or removed. Pools with transfers are also checked for capacity periodically.
+     */
     private void cycle() {
+        long forecastIntervalMs = properties.getForecastInterval().toMillis();
+        long nextForecast = System.currentTimeMillis() + forecastIntervalMs;
         while (!Thread.interrupted()) {
+            Map.Entry<Address, Address> pool;
             try {
-                Map<Address, Map<Address, List<OutgoingChannelState>>> indexed = new HashMap<>();
-                registry.all().forEach(
-                    channel -> indexed.computeIfAbsent(channel.getChannel().getSenderAddress(), sender -> new HashMap<>())
-                        .computeIfAbsent(channel.getChannel().getReceiverAddress(), receiver -> new ArrayList<>())
-                        .add(channel)
-                );
-                indexed.forEach((sender, map) -> map.forEach((receiver,channels) -> managePool(sender, receiver, channels)));
-                channelPools.forEach((sender, map) -> map.forEach((receiver,conf) -> {
-                    if (indexed.get(sender) == null || indexed.get(sender).get(receiver) == null) {
-                        managePool(sender, receiver, Collections.emptyList());
-                    }
-                }));
-
-                Thread.sleep(1000L);
+                pool = changedPools.poll(Math.max(0, nextForecast - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
             } catch (InterruptedException e) {
                 break;
+            }
+            if (System.currentTimeMillis() >= nextForecast) {
+                try {
+                    forecastPools();
+                } catch (Throwable e) {
+                    log.error("Pools forecast failed", e);
+                }
+                nextForecast = System.currentTimeMillis() + forecastIntervalMs;
+            }
+            if (pool == null) continue;
+            changedPoolsSet.remove(pool);
+            try {
+                managePool(pool.getKey(), pool.getValue());
             } catch (Throwable e) {
-                log.error("Cycle failed", e);
+                log.error("Pool {} -> {} check failed", pool.getKey(), pool.getValue(), e);
                 try {
                     Thread.sleep(1000L);
                 } catch (InterruptedException e1) {
                     break;
                 }
+                poolChanged(pool.getKey(), pool.getValue());
             }
         }
     }
 
-    private void managePool(Address senderAddress, Address receiverAddress, List<OutgoingChannelState> channels) {
+    private void poolChanged(Address senderAddress, Address receiverAddress) {
+        Map.Entry<Address, Address> pool = new AbstractMap.SimpleImmutableEntry<>(senderAddress, receiverAddress);
+        if (changedPoolsSet.add(pool)) {
+            changedPools.add(pool);
+        }
+    }
+
+    private void managePool(Address senderAddress, Address receiverAddress) {
         ChannelPoolProperties channelProperties = getProperties(senderAddress, receiverAddress);
+        Map.Entry<Address, Address> pool = new AbstractMap.SimpleImmutableEntry<>(senderAddress, receiverAddress);
         if (channelProperties == null) {
-            channels.stream()
+            //pool removed: active channels are closed, opening ones on becoming active, closing ones keep their policy
+            appliedPolicies.remove(pool);
+            transferRates.remove(pool);
+            registry.getByParticipants(senderAddress, receiverAddress)
                 .filter(ch -> ch.isActive() && ch.getOpenBlock() > 0)
-                .sorted(Comparator.comparing(OutgoingChannelState::getOpenBlock))
                 .forEach(c -> registry.setPolicy(c, OutgoingChannelPolicy.NONE));
-        } else {
-            channels.forEach(c -> registry.setPolicy(c, channelProperties.getPolicy()));
-            long notClosedOrClosing = channels.stream().filter(c -> !c.isCloseRequested()).count();
-            if (notClosedOrClosing < channelProperties.getMinActiveChannels()) {
-                Address clientAddress = ethereumConfig.getClientAddress(senderAddress);
+            return;
+        }
+        OutgoingChannelPolicy policy = channelProperties.getPolicy();
+        if (!policy.equals(appliedPolicies.get(pool))) {
+            registry.getByParticipants(senderAddress, receiverAddress).forEach(c -> registry.setPolicy(c, policy));
+            appliedPolicies.put(pool, policy);
+        }
+        int notClosedOrClosing = registry.getNotClosingCount(senderAddress, receiverAddress);
+        if (notClosedOrClosing < channelProperties.getMinActiveChannels()) {
+            Address clientAddress = ethereumConfig.getClientAddress(senderAddress);
+            for (int i = notClosedOrClosing; i < channelProperties.getMinActiveChannels(); i++) {
                 OutgoingChannelState newChannel = new OutgoingChannelState(senderAddress, clientAddress, receiverAddress, channelProperties.getBlockchainProperties());
-                registry.register(newChannel, channelProperties.getPolicy());
+                registry.register(newChannel, policy);
             }
-            long active = channels.stream().filter(OutgoingChannelState::isActive).count();
-            if (active > channelProperties.getMaxActiveChannels()) {
-                channels.stream()
-                    .filter(ch -> ch.isActive() && ch.getOpenBlock() > 0)
-                    .sorted(Comparator.comparing(OutgoingChannelState::getOpenBlock))
-                    .limit(active - channelProperties.getMaxActiveChannels())
-                    .forEach(OutgoingChannelState::setNeedClose);
+        }
+        int active = registry.getActiveCount(senderAddress, receiverAddress);
+        if (active > channelProperties.getMaxActiveChannels()) {
+            //oldest channels are closed first, so replacement channel opened in advance displaces exhausted one
+            registry.getByParticipants(senderAddress, receiverAddress)
+                .filter(ch -> ch.isActive() && ch.getOpenBlock() > 0)
+                .sorted(Comparator.comparing(OutgoingChannelState::getOpenBlock))
+                .limit(active - channelProperties.getMaxActiveChannels())
+                .forEach(OutgoingChannelState::setNeedClose);
+        }
+    }
+
+    private void forecastPools() {
+        long now = System.currentTimeMillis();
+        transferRates.forEach((pool, rate) -> {
+            double valuePerMs = rate.getRate(now);
+            if (valuePerMs > 0) {
+                forecastPool(pool.getKey(), pool.getValue(), valuePerMs);
             }
+        });
+    }
+
+    /**
+     * Opens new channel in advance if capacity of active and opening channels would be exhausted before new channel 
+     * becomes active.
+     */
+    private void forecastPool(Address senderAddress, Address receiverAddress, double valuePerMs) {
+        ChannelPoolProperties channelProperties = getProperties(senderAddress, receiverAddress);
+        if (channelProperties == null) return;
+        int active = registry.getActiveCount(senderAddress, receiverAddress);
+        int opening = registry.getNotClosingCount(senderAddress, receiverAddress) - active;
+        //at most one channel above maximum, it replaces exhausted one
+        if (active + opening > channelProperties.getMaxActiveChannels()) return;
+
+        BigInteger capacity = registry.getByParticipants(senderAddress, receiverAddress)
+            .filter(OutgoingChannelState::isActive)
+            .map(c -> c.getCapacity().max(BigInteger.ZERO))
+            .reduce(channelProperties.getPolicy().getDeposit().multiply(BigInteger.valueOf(Math.max(0, opening))), BigInteger::add);
+        double exhaustedInMs = capacity.doubleValue() / valuePerMs;
+        long openTimeMs = registry.getAverageOpenTimeMs();
+        if (openTimeMs == 0) {
+            openTimeMs = properties.getOpenBlocks() * ethereumService.getAverageBlockTimeMs();
+        }
+        if (exhaustedInMs < openTimeMs * properties.getPreOpenMargin()) {
+            log.info("Pool {} -> {} capacity {} will be exhausted in {} ms, opening new channel in advance, expected opening time {} ms", 
+                senderAddress, receiverAddress, capacity, (long) exhaustedInMs, openTimeMs);
+            Address clientAddress = ethereumConfig.getClientAddress(senderAddress);
+            OutgoingChannelState newChannel = new OutgoingChannelState(senderAddress, clientAddress, receiverAddress, channelProperties.getBlockchainProperties());
+            registry.register(newChannel, channelProperties.getPolicy());
         }
     }
 
     @EventListener(ContextStartedEvent.class)
     public void start() throws Exception {
+        registry.setParticipantsListener(this::poolChanged);
         Retriable.wrapTask(() -> {
             loadPools();
             loadChannels();
@@ -125,9 +217,31 @@ public class OutgoingChannelPoolManager {
         .withErrorMessage("Failed to load state from persistent store")
         .call();
 
+        ready = true;
         watchThread.start();
     }
 
+    /**
+     * @return true when pools and channels are loaded
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return number of state updates sent by managed channels
+     */
+    public long getSyncUpdates() {
+        return registry.all().mapToLong(OutgoingChannelState::getSyncUpdates).sum();
+    }
+
+    /**
+     * @return number of transfers and unlocks coalesced into state updates of managed channels
+     */
+    public long getCoalescedTransfers() {
+        return registry.all().mapToLong(OutgoingChannelState::getCoalescedTransfers).sum();
+    }
+
     @PreDestroy
     public void destroy() throws InterruptedException {
         //TODO close all channels
@@ -149,26 +263,60 @@ public class OutgoingChannelPoolManager {
         }
     }
 
-    private void loadChannels() {
-        for (OutgoingChannelBean bean : channelRepository.all()) {
-            if (bean.getStatus() == OutgoingChannelState.Status.SETTLED) continue;
-            Optional<OutgoingChannelState> state = registry.getChannel(bean.getAddress());
-            OutgoingChannelState channel;
-            if (!state.isPresent()) {
-                channel = registry.loadChannel(bean.getAddress());
-                if (!ethereumConfig.hasAddress(channel.getChannel().getSenderAddress())) {
-                    log.warn("Address is not managed, skipping channel: " + channel.getChannelAddress());
-                    continue;
-                }
-                registry.register(channel, getPolicy(channel.getChannel().getSenderAddress(), channel.getChannel().getReceiverAddress()));
-            } else {
-                channel = state.get();
+    /**
+     * Loads channels in parallel, each channel needs several blockchain calls and reads of its transfers.
+     */
+    private void loadChannels() throws InterruptedException {
+        long started = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(
+            properties.getLoadThreads(),
+            new ThreadFactoryBuilder().setNameFormat("Channel loader %d").setDaemon(true).build()
+        );
+        AtomicInteger loaded = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (OutgoingChannelBean bean : channelRepository.all()) {
+                if (bean.getStatus().isAnyOf(OutgoingChannelState.Status.SETTLED, OutgoingChannelState.Status.DISPOSABLE)) continue;
+                futures.add(executor.submit(() -> {
+                    loadChannel(bean);
+                    int count = loaded.incrementAndGet();
+                    if (count % 100 == 0) {
+                        log.info("Loaded {} outgoing channels", count);
+                    }
+                }));
+            }
+            log.info("Loading {} outgoing channels with {} threads", futures.size(), properties.getLoadThreads());
+            for (Future<?> future : futures) {
+                future.get();
             }
-                
-            Iterable<SignedTransfer> transfers = transferRepository.getAllById(bean.getAddress());
-            Iterable<SignedTransferUnlock> unlocks = unlockRepository.getAllById(bean.getAddress());
-            channel.updatePersistentState(bean, transfers, unlocks);
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        } finally {
+            executor.shutdownNow();
         }
+        log.info("Loaded {} outgoing channels in {} ms", loaded.get(), System.currentTimeMillis() - started);
+    }
+
+    private void loadChannel(OutgoingChannelBean bean) {
+        Optional<OutgoingChannelState> state = registry.getChannel(bean.getAddress());
+        if (state.isPresent()) {
+            updatePersistentState(state.get(), bean);
+            return;
+        }
+        OutgoingChannelState channel = registry.loadChannel(bean.getAddress());
+        if (!ethereumConfig.hasAddress(channel.getChannel().getSenderAddress())) {
+            log.warn("Address is not managed, skipping channel: " + channel.getChannelAddress());
+            return;
+        }
+        //registered with persistent state, so coordinator never sees blockchain-only state
+        updatePersistentState(channel, bean);
+        registry.register(channel, getPolicy(channel.getChannel().getSenderAddress(), channel.getChannel().getReceiverAddress()));
+    }
+
+    private void updatePersistentState(OutgoingChannelState channel, OutgoingChannelBean bean) {
+        Iterable<SignedTransfer> transfers = transferRepository.getAllById(bean.getAddress());
+        Iterable<SignedTransferUnlock> unlocks = unlockRepository.getAllById(bean.getAddress());
+        channel.updatePersistentState(bean, transfers, unlocks);
     }
 
     private OutgoingChannelPolicy getPolicy(Address sender, Address receiver) {
@@ -185,6 +333,14 @@ public class OutgoingChannelPoolManager {
         return registry.getByParticipants(sender, receiver).collect(Collectors.toList());
     }
 
+    Optional<OutgoingChannelState.Reservation> pickChannel(Address sender, Address receiver, BigInteger value) {
+        return registry.pickChannel(sender, receiver, value);
+    }
+
+    ChannelStatusResponse getActiveChannels(Address sender, Address receiver) {
+        return registry.getActiveChannels(sender, receiver);
+    }
+
     public void addPool(Address sender, Address receiver, ChannelPoolProperties config) {
         OutgoingChannelPoolBean bean = new OutgoingChannelPoolBean(sender, receiver, config);
         poolRepository.save(bean);
@@ -194,23 +350,38 @@ public class OutgoingChannelPoolManager {
     private void createOrUpdatePool(Address sender, Address receiver, ChannelPoolProperties config) {
         ethereumConfig.checkAddress(sender);
         channelPools.computeIfAbsent(sender, a -> new ConcurrentHashMap<>()).put(receiver, config);
+        poolChanged(sender, receiver);
     }
 
     public void removePool(Address sender, Address receiver) {
         Map<Address, ChannelPoolProperties> poolMap = channelPools.get(sender);
         if (poolMap == null) return;
         poolMap.remove(receiver);
+        poolChanged(sender, receiver);
     }
     
     void registerTransfer(SignedTransfer signedTransfer) throws SignatureException {
         OutgoingChannelState channelState = registry.getChannel(signedTransfer.getChannelAddress()).orElseThrow(
             () -> new IllegalStateException("Unknown channel address: " + signedTransfer.getChannelAddress())
         );
-        channelState.registerTransfer(signedTransfer);
+        if (channelState.registerTransfer(signedTransfer)) {
+            recordTransfer(channelState, signedTransfer.getValueWei());
+        }
         transferRepository.save(signedTransfer);
         channelRepository.save(channelState.getPersistentState());
     }
 
+    /**
+     * Adds transfer to the rate of its pool, rates are kept for configured pools only.
+     */
+    private void recordTransfer(OutgoingChannelState channel, BigInteger value) {
+        Address senderAddress = channel.getChannel().getSenderAddress();
+        Address receiverAddress = channel.getChannel().getReceiverAddress();
+        if (getProperties(senderAddress, receiverAddress) == null) return;
+        Map.Entry<Address, Address> pool = new AbstractMap.SimpleImmutableEntry<>(senderAddress, receiverAddress);
+        transferRates.computeIfAbsent(pool, p -> new TransferRate(properties.getRateHalfLife().toMillis())).add(value, System.currentTimeMillis());
+    }
+
     void registerTransferUnlock(SignedTransferUnlock transferUnlock) {
         OutgoingChannelState channelState = registry.getChannel(transferUnlock.getChannelAddress()).orElseThrow(
             () -> new IllegalStateException("Unknown channel address: " + transferUnlock.getChannelAddress())
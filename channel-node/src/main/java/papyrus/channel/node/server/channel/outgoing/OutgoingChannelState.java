@@ -6,8 +6,16 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import org.slf4j.Logger;
@@ -21,9 +29,11 @@ import com.google.common.base.Preconditions;
 import papyrus.channel.node.contract.ChannelContract;
 import papyrus.channel.node.entity.ChannelProperties;
 import papyrus.channel.node.server.channel.BlockchainChannel;
+import papyrus.channel.node.server.channel.ChannelEvent;
 import papyrus.channel.node.server.channel.SignedChannelState;
 import papyrus.channel.node.server.channel.SignedTransfer;
 import papyrus.channel.node.server.channel.SignedTransferUnlock;
+import papyrus.channel.node.server.ethereum.ContractsManager;
 import papyrus.channel.node.server.ethereum.TokenConvert;
 import papyrus.channel.node.server.ethereum.TokenService;
 
@@ -32,6 +42,7 @@ import static com.google.common.base.Preconditions.checkState;
 
 public class OutgoingChannelState {
     private static final Logger log = LoggerFactory.getLogger(OutgoingChannelState.class);
+    private static final AtomicLong RESERVATION_IDS = new AtomicLong();
     
     private Status status;
     private BlockchainChannel channel;
@@ -40,7 +51,23 @@ public class OutgoingChannelState {
     private Map<Uint256, SignedTransferUnlock> unlocks = new HashMap<>();
     private long currentNonce;
     private long syncedNonce;
+    //last nonce sent to receiver, it may be not acknowledged yet
+    private long sentNonce;
+    //transfers and unlocks registered after last sent state
+    private int pendingTransfers;
+    private long syncUpdates;
+    private long coalescedTransfers;
+    private int lastCoalescedTransfers;
     private volatile boolean needClose;
+    private volatile Listener listener;
+    //time when new channel was created locally, 0 for channels loaded from blockchain
+    private final long createdTime;
+    private long openDurationMs;
+    //capacity reserved for transfers not registered yet, in order of reservation
+    private final Queue<Reservation> reservations = new ConcurrentLinkedQueue<>();
+    private final Map<Long, Reservation> reservationsById = new ConcurrentHashMap<>();
+    private final AtomicReference<BigInteger> reservedAmount = new AtomicReference<>(BigInteger.ZERO);
+    private final AtomicInteger reservationsCount = new AtomicInteger();
 
     private StateTransition transition;
 
@@ -48,10 +75,12 @@ public class OutgoingChannelState {
         channel = new BlockchainChannel(senderAddress, clientAddress, receiverAddress);
         channel.setProperties(properties);
         setStatus(Status.NEW);
+        createdTime = System.currentTimeMillis();
     }
 
     public OutgoingChannelState(BlockchainChannel channel) {
         this.channel = channel;
+        createdTime = 0;
         status = 
             channel.getSettled() > 0 ? Status.SETTLED : 
             channel.getClosed() > 0 ? Status.CLOSED : 
@@ -79,21 +108,67 @@ public class OutgoingChannelState {
         return channel.getSettled() > 0;
     }
 
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    private void fireTransfersChanged() {
+        Listener l = this.listener;
+        if (l != null) l.transfersChanged();
+    }
+
+    private void fireStatusChanged() {
+        Listener l = this.listener;
+        if (l != null) l.statusChanged();
+    }
+
     BlockchainChannel getChannel() {
         return channel;
     }
 
-    public void updateBlockchainState(OutgoingChannelState state) {
-        this.channel = state.getChannel();
-        if (status != state.getStatus() && (transition == null || transition.nextStatus != state.getStatus())) {
-            log.warn("Channel {} status changed in blockchain from {} to {} ", getAddressSafe(), status, state.getStatus());
-            status = state.getStatus();
+    /**
+     * Applies change observed in blockchain, e.g. close requested by receiver. Status only moves forward,
+     * transition in progress to the same status completes as usual.
+     */
+    public void updateBlockchainState(ChannelEvent event) {
+        Status eventStatus;
+        switch (event.getType()) {
+            case CLOSE_REQUESTED:
+                if (channel.getCloseRequested() == 0) channel.setCloseRequested(event.getBlockNumber());
+                eventStatus = Status.CLOSE_REQUESTED;
+                break;
+            case CLOSED:
+                if (channel.getClosed() == 0) channel.setClosed(event.getBlockNumber());
+                channel.setClosingAddress(event.getClosingAddress());
+                eventStatus = Status.CLOSED;
+                break;
+            case SETTLED:
+                if (channel.getSettled() == 0) channel.setSettled(event.getBlockNumber());
+                eventStatus = Status.SETTLED;
+                break;
+            case AUDITED:
+                channel.setAudited(event.getBlockNumber());
+                return;
+            case DELETED:
+                if (status == Status.SETTLED) makeDisposable();
+                return;
+            default:
+                return;
+        }
+        if (status.ordinal() < eventStatus.ordinal() && (transition == null || transition.nextStatus != eventStatus)) {
+            log.warn("Channel {} status changed in blockchain from {} to {} ", getAddressSafe(), status, eventStatus);
+            status = eventStatus;
         }
     }
 
-    public void updatePersistentState(OutgoingChannelBean bean, Iterable<SignedTransfer> transfers, Iterable<SignedTransferUnlock> unlocks) {
+    public synchronized void updatePersistentState(OutgoingChannelBean bean, Iterable<SignedTransfer> transfers, Iterable<SignedTransferUnlock> unlocks) {
         currentNonce = bean.getCurrentNonce();
         syncedNonce = bean.getSyncedNonce();
+        //current nonce could be sent before restart, never reuse it for another state
+        sentNonce = currentNonce;
+        if (currentNonce > syncedNonce) {
+            currentNonce ++;
+        }
         transferedAmount = TokenConvert.toWei(bean.getTransferred());
         status = bean.getStatus();
 
@@ -110,9 +185,10 @@ public class OutgoingChannelState {
             }
         }
         transferedAmount = transferred;
+        fireStatusChanged();
     }
     
-    public OutgoingChannelBean getPersistentState() {
+    public synchronized OutgoingChannelBean getPersistentState() {
         OutgoingChannelBean bean = new OutgoingChannelBean();
         bean.setCurrentNonce(currentNonce);
         bean.setSyncedNonce(syncedNonce);
@@ -139,6 +215,16 @@ public class OutgoingChannelState {
     public void setActive() {
         checkStatus(Status.OPENED);
         setStatus(Status.ACTIVE);
+        if (createdTime > 0) {
+            openDurationMs = System.currentTimeMillis() - createdTime;
+        }
+    }
+
+    /**
+     * @return time from creation of new channel to its activation, 0 if unknown
+     */
+    public long getOpenDurationMs() {
+        return openDurationMs;
     }
 
     private void setStatus(Status newStatus) {
@@ -197,6 +283,7 @@ public class OutgoingChannelState {
         transfers.put(transferId, transfer);
         if (!transfer.isLocked()) {
             transferedAmount = transferedAmount.add(transfer.getValueWei());
+            releaseReservation(transfer.getReservationId());
         }
         stateChanged();
         return true;
@@ -213,6 +300,7 @@ public class OutgoingChannelState {
         }
         if (unlocks.put(transferId, transfer) == null) {
             transferedAmount = transferedAmount.add(existing.getValueWei());
+            releaseReservation(existing.getReservationId());
         }
         stateChanged();
         return true;
@@ -230,30 +318,151 @@ public class OutgoingChannelState {
     }
 
     private void stateChanged() {
-        if (currentNonce == syncedNonce) {
+        if (currentNonce == sentNonce) {
             currentNonce ++;
         }
+        pendingTransfers ++;
+        fireTransfersChanged();
     }
 
     public synchronized boolean isNeedsSync() {
         return currentNonce > syncedNonce;
     }
 
+    /**
+     * @return true if current state was not sent to receiver yet 
+     */
+    public synchronized boolean isNeedsSend() {
+        return currentNonce > sentNonce;
+    }
+
     public synchronized SignedChannelState createState() {
         SignedChannelState state = new SignedChannelState(channel.getChannelAddress());
         state.setNonce(currentNonce);
         state.setCompletedTransfers(transferedAmount);
+        sentNonce = currentNonce;
+        syncUpdates ++;
+        coalescedTransfers += pendingTransfers;
+        lastCoalescedTransfers = pendingTransfers;
+        pendingTransfers = 0;
         return state;
     }
 
+    public synchronized int getPendingTransfers() {
+        return pendingTransfers;
+    }
+
+    /**
+     * @return number of states created to send to receiver
+     */
+    public synchronized long getSyncUpdates() {
+        return syncUpdates;
+    }
+
+    /**
+     * @return total number of transfers and unlocks coalesced into sent states
+     */
+    public synchronized long getCoalescedTransfers() {
+        return coalescedTransfers;
+    }
+
+    /**
+     * @return number of transfers and unlocks coalesced into last sent state
+     */
+    public synchronized int getLastCoalescedTransfers() {
+        return lastCoalescedTransfers;
+    }
+
+    /**
+     * Acknowledgements may come in any order, synced nonce never goes back.
+     */
     public synchronized void syncCompleted(SignedChannelState state) {
-        syncedNonce = state.getNonce();
+        if (state.getNonce() > syncedNonce) {
+            syncedNonce = state.getNonce();
+        }
+    }
+
+    /**
+     * If failed state is the last one sent, it is resent with next nonce.
+     */
+    public synchronized void syncFailed(SignedChannelState state) {
+        if (state.getNonce() == sentNonce && currentNonce == sentNonce && currentNonce > syncedNonce) {
+            currentNonce ++;
+        }
     }
 
     public BigInteger getBalance() {
         return channel.getBalance();
     }
 
+    /**
+     * @return deposit not used by transfers yet
+     */
+    public BigInteger getCapacity() {
+        return channel.getBalance().subtract(transferedAmount);
+    }
+
+    /**
+     * @return deposit not used by transfers and not reserved
+     */
+    public BigInteger getFreeCapacity() {
+        return getCapacity().subtract(reservedAmount.get());
+    }
+
+    /**
+     * @return number of reserved transfers not registered yet
+     */
+    public int getReservationsCount() {
+        return reservationsCount.get();
+    }
+
+    /**
+     * Reserves capacity for a transfer. Reservation is released when a transfer carrying its id uses the capacity,
+     * or by {@link #expireReservations(long)}.
+     * 
+     * @return empty if capacity is not enough
+     */
+    public Optional<Reservation> reserve(BigInteger value, long expirationTime) {
+        while (true) {
+            BigInteger reserved = reservedAmount.get();
+            BigInteger newReserved = reserved.add(value);
+            if (getCapacity().compareTo(newReserved) < 0) return Optional.empty();
+            if (reservedAmount.compareAndSet(reserved, newReserved)) break;
+        }
+        reservationsCount.incrementAndGet();
+        Reservation reservation = new Reservation(RESERVATION_IDS.incrementAndGet(), value, expirationTime);
+        reservationsById.put(reservation.id, reservation);
+        reservations.add(reservation);
+        return Optional.of(reservation);
+    }
+
+    public void expireReservations(long now) {
+        Reservation reservation;
+        while ((reservation = reservations.peek()) != null && reservation.expirationTime <= now) {
+            release(reservation);
+        }
+    }
+
+    /**
+     * Releases reservation used by a transfer, transfers without reservation id wait for expiration of theirs.
+     */
+    private void releaseReservation(long reservationId) {
+        if (reservationId == 0) return;
+        Reservation reservation = reservationsById.get(reservationId);
+        if (reservation != null) {
+            release(reservation);
+        }
+    }
+
+    private void release(Reservation reservation) {
+        if (reservation.released.compareAndSet(false, true)) {
+            reservationsById.remove(reservation.id);
+            reservations.remove(reservation);
+            reservedAmount.accumulateAndGet(reservation.value, BigInteger::subtract);
+            reservationsCount.decrementAndGet();
+        }
+    }
+
     public void approveDeposit(TokenService token, BigInteger value) {
         checkStatus(Status.CREATED);
         startTransition(
@@ -267,18 +476,37 @@ public class OutgoingChannelState {
         status = Status.CREATED;
     }
 
-    public void deposit(BigInteger value) {
+    public void deposit(ContractsManager contracts, BigInteger value) {
         checkStatus(Status.DEPOSIT_APPROVED);
         startTransition(
             Status.OPENED, 
-            channel.getContract().deposit(new Uint256(value)),
+            contracts.execute(channel.getContract(), "deposit", new Uint256(value)),
             tr -> channel.setBalance(channel.getBalance().add(value))
         );
     }
     
+    /**
+     * Adds deposit to active channel, channel stays active meanwhile.
+     */
+    public void topUp(ContractsManager contracts, BigInteger value) {
+        checkStatus(Status.ACTIVE);
+        TokenService token = contracts.getTokenService();
+        startTransition(
+            Status.ACTIVE,
+            token.approve(channel.getChannelAddress(), value)
+                .thenCompose(r -> contracts.execute(channel.getContract(), "deposit", new Uint256(value)))
+                .whenComplete((tr, error) -> {
+                    //failed top-up is approved again
+                    if (error != null) token.releaseDeposit(channel.getChannelAddress());
+                }),
+            tr -> channel.setBalance(channel.getBalance().add(value))
+        );
+    }
+
     public boolean setNeedClose() {
         if (!status.isAnyOf(Status.SETTLED, Status.DISPUTING)) {
             this.needClose = true;
+            fireStatusChanged();
             return true;
         }
         return false;
@@ -297,21 +525,21 @@ public class OutgoingChannelState {
         this.status = Status.DISPOSABLE;
     }
 
-    public void doRequestClose() {
+    public void doRequestClose(ContractsManager contracts) {
         checkStatus(Status.OPENED, Status.CREATED, Status.ACTIVE);
         startTransition(Status.CLOSE_REQUESTED, 
-            channel.getContract().request_close(),
+            contracts.execute(channel.getContract(), "request_close"),
             tr -> channel.setCloseRequested(tr.getBlockNumber().longValueExact())
         );
     }
 
-    public void closeIfPossible(long currentBlockNumber) {
+    public void closeIfPossible(ContractsManager contracts, long currentBlockNumber) {
         Preconditions.checkState(channel.getCloseRequested() > 0);
         checkStatus(Status.CLOSE_REQUESTED);
         long blocksLeft = channel.getCloseRequested() + channel.getProperties().getCloseTimeout() - currentBlockNumber;
         if (blocksLeft <= 0) {
             startTransition(Status.CLOSED,
-                channel.getContract().close(
+                contracts.execute(channel.getContract(), "close",
                     new Uint256(currentNonce),
                     new Uint256(transferedAmount),
                     new DynamicBytes(new byte[0])
@@ -324,7 +552,7 @@ public class OutgoingChannelState {
     }
     
     
-    public void settleIfPossible(long currentBlockNumber) {
+    public void settleIfPossible(ContractsManager contracts, long currentBlockNumber) {
         Preconditions.checkState(channel.getClosed() > 0);
         Preconditions.checkState(channel.getSettled() == 0);
         checkStatus(Status.CLOSED);
@@ -332,7 +560,7 @@ public class OutgoingChannelState {
         if (blocksLeft <= 0) {
             startTransition(
                 Status.SETTLED, 
-                channel.getContract().settle(),
+                contracts.execute(channel.getContract(), "settle"),
                 tr -> {
                     long blockNumber = tr.getBlockNumber().longValueExact();
                     channel.setSettled(blockNumber);
@@ -374,6 +602,41 @@ public class OutgoingChannelState {
         }
     }
     
+    /**
+     * Receives notifications about changes which require channel processing.
+     */
+    interface Listener {
+        /** Transfer registered or unlocked, new state should be sent to receiver */
+        void transfersChanged();
+
+        /** Transition completed or close requested */
+        void statusChanged();
+    }
+
+    /**
+     * Capacity reserved in this channel by {@link #reserve}, id is unique within the node process.
+     */
+    public class Reservation {
+        final long id;
+        final BigInteger value;
+        final long expirationTime;
+        final AtomicBoolean released = new AtomicBoolean();
+
+        Reservation(long id, BigInteger value, long expirationTime) {
+            this.id = id;
+            this.value = value;
+            this.expirationTime = expirationTime;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public OutgoingChannelState getChannel() {
+            return OutgoingChannelState.this;
+        }
+    }
+
     private abstract class StateTransition {
         Status nextStatus;
 
@@ -399,7 +662,10 @@ public class OutgoingChannelState {
                     transition = null;
                     try {
                         applyResult.accept(task.get());
-                        status = nextStatus;
+                        //status could move forward meanwhile by blockchain event
+                        if (status.ordinal() <= nextStatus.ordinal()) {
+                            status = nextStatus;
+                        }
                         log.warn("Channel {} transition {}->{} SUCCESS", getAddressSafe(), prevStatus, nextStatus);
                     } catch (Exception e) {
                         log.warn("Channel {} transition {}->{} FAILED", getAddressSafe(), prevStatus, nextStatus, e);
@@ -407,5 +673,8 @@ public class OutgoingChannelState {
                 }
             }
         }; 
+        if (task instanceof CompletableFuture) {
+            ((CompletableFuture<T>) task).whenComplete((r, e) -> fireStatusChanged());
+        }
     }
 }
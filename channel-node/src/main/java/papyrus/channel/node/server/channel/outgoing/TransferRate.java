@@ -0,0 +1,34 @@
+package papyrus.channel.node.server.channel.outgoing;
+
+import java.math.BigInteger;
+
+/**
+ * Exponentially decaying rate of transferred value.
+ */
+class TransferRate {
+    private final double tauMs;
+    //value per ms at lastUpdate
+    private double rate;
+    private long lastUpdate;
+
+    TransferRate(long halfLifeMs) {
+        this.tauMs = halfLifeMs / Math.log(2);
+    }
+
+    synchronized void add(BigInteger value, long now) {
+        rate = decayed(now) + value.doubleValue() / tauMs;
+        lastUpdate = now;
+    }
+
+    /**
+     * @return value per ms
+     */
+    synchronized double getRate(long now) {
+        return decayed(now);
+    }
+
+    private double decayed(long now) {
+        if (lastUpdate == 0) return 0;
+        return rate * Math.exp(-Math.max(0, now - lastUpdate) / tauMs);
+    }
+}
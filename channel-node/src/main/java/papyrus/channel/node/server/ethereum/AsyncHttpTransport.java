@@ -0,0 +1,84 @@
+package papyrus.channel.node.server.ethereum;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Posts JSON-RPC requests without blocking the caller. Connections are pooled and kept alive, one I/O reactor
+ * serves all requests in flight. Futures are completed on the callback executor, so dependent actions never
+ * run on the reactor thread.
+ */
+class AsyncHttpTransport implements Closeable {
+    private final CloseableHttpAsyncClient client;
+    private final Executor callbackExecutor;
+
+    AsyncHttpTransport(int maxConnectionsPerNode, int timeoutMs, Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        client = HttpAsyncClients.custom()
+            .setMaxConnPerRoute(maxConnectionsPerNode)
+            .setMaxConnTotal(maxConnectionsPerNode * 4)
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setConnectTimeout(timeoutMs)
+                .setSocketTimeout(timeoutMs)
+                .setConnectionRequestTimeout(timeoutMs)
+                .build())
+            .build();
+        client.start();
+    }
+
+    /**
+     * @return response body, completed with {@link IOException} on connection failure or HTTP error status
+     */
+    CompletableFuture<byte[]> post(String url, byte[] body) {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        HttpPost post = new HttpPost(url);
+        post.setEntity(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+        client.execute(post, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                try {
+                    int status = response.getStatusLine().getStatusCode();
+                    if (status != 200) {
+                        throw new IOException("Request to " + url + " failed with HTTP status " + status);
+                    }
+                    byte[] bytes = EntityUtils.toByteArray(response.getEntity());
+                    callbackExecutor.execute(() -> result.complete(bytes));
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                fail(e instanceof IOException ? e : new IOException(e));
+            }
+
+            @Override
+            public void cancelled() {
+                fail(new IOException("Request to " + url + " cancelled"));
+            }
+
+            private void fail(Exception e) {
+                callbackExecutor.execute(() -> result.completeExceptionally(e));
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        client.close();
+    }
+}
@@ -0,0 +1,152 @@
+package papyrus.channel.node.server.ethereum;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.methods.response.EthFilter;
+import org.web3j.protocol.core.methods.response.EthLog;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import papyrus.channel.node.config.EthereumConfig;
+
+/**
+ * Single source of current block number for the node. Follows new blocks with new block filter, falls back to
+ * polling of block number if node does not support filters. Subscribers are notified on the clock thread in
+ * order of block numbers.
+ */
+@Component
+public class BlockClock {
+    private static final Logger log = LoggerFactory.getLogger(BlockClock.class);
+    private static final long DEFAULT_BLOCK_TIME_MS = 15_000;
+    private static final double BLOCK_TIME_ALPHA = 0.1;
+
+    private final Web3j web3j;
+    private final long pollIntervalMs;
+    private final List<LongConsumer> subscribers = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService executor;
+
+    private volatile long blockNumber;
+    private volatile double averageBlockTimeMs;
+    private long blockNumberChanged;
+    //created on first poll, recreated if node forgets it
+    private BigInteger filterId;
+    private boolean useFilter = true;
+
+    public BlockClock(Web3j web3j, EthereumConfig config) {
+        this.web3j = web3j;
+        pollIntervalMs = config.getRpcProperties().getBlockPollInterval().toMillis();
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("Block clock").setDaemon(true).build());
+    }
+
+    @PostConstruct
+    public void start() {
+        executor.scheduleWithFixedDelay(this::poll, 0, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Subscriber receives each new block number, blocks may be skipped if several appeared between checks.
+     */
+    public void subscribe(LongConsumer subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(LongConsumer subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * @return last known block number, requested from node if clock did not get it yet
+     */
+    public long getBlockNumber() {
+        long number = blockNumber;
+        if (number > 0) return number;
+        try {
+            return web3j.ethBlockNumber().send().getBlockNumber().longValueExact();
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * @return moving average of observed time between blocks
+     */
+    public long getAverageBlockTimeMs() {
+        double average = averageBlockTimeMs;
+        return average > 0 ? (long) average : DEFAULT_BLOCK_TIME_MS;
+    }
+
+    private void poll() {
+        try {
+            if (useFilter && !checkFilter()) return;
+            long newBlockNumber = web3j.ethBlockNumber().send().getBlockNumber().longValueExact();
+            if (newBlockNumber > blockNumber) {
+                updateBlockNumber(newBlockNumber);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to check new blocks: {}", e.toString());
+        }
+    }
+
+    /**
+     * @return true if new blocks appeared or filter is not usable
+     */
+    private boolean checkFilter() throws IOException {
+        if (filterId == null) {
+            EthFilter filter = web3j.ethNewBlockFilter().send();
+            if (filter.hasError()) {
+                log.info("New block filter is not supported, polling block number: {}", filter.getError().getMessage());
+                useFilter = false;
+                return true;
+            }
+            filterId = filter.getFilterId();
+            //blocks before filter creation are not reported
+            return true;
+        }
+        EthLog changes = web3j.ethGetFilterChanges(filterId).send();
+        if (changes.hasError()) {
+            //filter expired or node restarted
+            log.warn("New block filter failed, recreating: {}", changes.getError().getMessage());
+            filterId = null;
+            return true;
+        }
+        return changes.getLogs() != null && !changes.getLogs().isEmpty();
+    }
+
+    private void updateBlockNumber(long newBlockNumber) {
+        long now = System.currentTimeMillis();
+        long previous = blockNumber;
+        if (previous > 0) {
+            double blockTimeMs = (now - blockNumberChanged) / (double) (newBlockNumber - previous);
+            averageBlockTimeMs = averageBlockTimeMs == 0 ? blockTimeMs : averageBlockTimeMs + BLOCK_TIME_ALPHA * (blockTimeMs - averageBlockTimeMs);
+        }
+        blockNumberChanged = now;
+        blockNumber = newBlockNumber;
+        for (LongConsumer subscriber : subscribers) {
+            try {
+                subscriber.accept(newBlockNumber);
+            } catch (Exception e) {
+                log.error("Block subscriber failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package papyrus.channel.node.server.ethereum;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.math.BigInteger;
+
+import org.web3j.protocol.Web3j;
+import org.web3j.tx.Contract;
+import org.web3j.tx.TransactionManager;
+
+/**
+ * Creates instances of generated contract wrapper. Constructor and binary are resolved by reflection once per
+ * wrapper class, instances are created by method handle.
+ */
+class ContractFactory<C extends Contract> {
+    private static final ClassValue<ContractFactory<?>> FACTORIES = new ClassValue<ContractFactory<?>>() {
+        @Override
+        protected ContractFactory<?> computeValue(Class<?> type) {
+            return new ContractFactory<>(type.asSubclass(Contract.class));
+        }
+    };
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(
+        Contract.class, String.class, Web3j.class, TransactionManager.class, BigInteger.class, BigInteger.class);
+
+    private final Class<C> type;
+    private final MethodHandle constructor;
+    //null for abstract contracts
+    private final String binary;
+
+    @SuppressWarnings("unchecked")
+    static <C extends Contract> ContractFactory<C> of(Class<C> type) {
+        return (ContractFactory<C>) FACTORIES.get(type);
+    }
+
+    private ContractFactory(Class<C> type) {
+        this.type = type;
+        try {
+            //String contractAddress, Web3j web3j, TransactionManager transactionManager, BigInteger gasPrice, BigInteger gasLimit
+            Constructor<C> declared = type.getDeclaredConstructor(String.class, Web3j.class, TransactionManager.class, BigInteger.class, BigInteger.class);
+            declared.setAccessible(true);
+            constructor = MethodHandles.lookup().unreflectConstructor(declared).asType(CONSTRUCTOR_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException("Not a contract wrapper: " + type.getName(), e);
+        }
+        binary = readBinary(type);
+    }
+
+    private static String readBinary(Class<?> type) {
+        try {
+            Field field = type.getDeclaredField("BINARY");
+            field.setAccessible(true);
+            return (String) field.get(null);
+        } catch (NoSuchFieldException e) {
+            return null;
+        } catch (IllegalAccessException | ClassCastException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    C create(String contractAddress, Web3j web3j, TransactionManager transactionManager, BigInteger gasPrice, BigInteger gasLimit) {
+        try {
+            return type.cast((Contract) constructor.invokeExact(contractAddress, web3j, transactionManager, gasPrice, gasLimit));
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to create " + type.getSimpleName(), e);
+        }
+    }
+
+    String getBinary() {
+        if (binary == null) {
+            throw new IllegalStateException("No binary in " + type.getName());
+        }
+        return binary;
+    }
+}
@@ -1,27 +1,39 @@
 package papyrus.channel.node.server.ethereum;
 
 import java.io.IOException;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.math.BigInteger;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.FunctionReturnDecoder;
+import org.web3j.abi.TypeReference;
 import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Function;
 import org.web3j.abi.datatypes.Type;
 import org.web3j.crypto.Credentials;
 import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.DefaultBlockParameterName;
 import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.Transaction;
 import org.web3j.protocol.core.methods.response.TransactionReceipt;
 import org.web3j.tx.Contract;
 import org.web3j.tx.TransactionManager;
+import org.web3j.utils.Numeric;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import papyrus.channel.node.config.ContractsProperties;
 import papyrus.channel.node.config.EthRpcProperties;
@@ -32,7 +44,7 @@ import papyrus.channel.node.contract.PapyrusToken;
 public class ContractsManager {
     private static final Logger log = LoggerFactory.getLogger(ContractsManager.class);
 
-    private final TransactionManager transactionManager;
+    private final ThreadsafeTransactionManager transactionManager;
     private final ContractsProperties contractsProperties;
     private final EndpointRegistryContract registry;
     private final ChannelManagerContract channelManager;
@@ -41,25 +53,36 @@ public class ContractsManager {
     private final PapyrusToken papyrusToken;
     private final TokenService tokenService;
     private final Address address;
+    private final TransactionReceiptTracker receiptTracker;
+    //channel contracts are dropped when their channels are not referenced anymore
+    private final Cache<ContractKey, Contract> contracts = CacheBuilder.newBuilder().weakValues().build();
 
-    public ContractsManager(EthRpcProperties rpcProperties, Web3j web3j, Credentials credentials, ContractsProperties contractsProperties, TransactionManager transactionManager) {
+    public ContractsManager(EthRpcProperties rpcProperties, Web3j web3j, Credentials credentials, ContractsProperties contractsProperties, ThreadsafeTransactionManager transactionManager, TransactionReceiptTracker receiptTracker, BlockClock blockClock) {
         this.web3j = web3j;
+        this.receiptTracker = receiptTracker;
         this.rpcProperties = rpcProperties;
         this.transactionManager = transactionManager;
         this.contractsProperties = contractsProperties;
 
         log.info("Configuring pre deployed contracts {}", contractsProperties.getAddress());
         
-        registry = loadPredeployedContract(EndpointRegistryContract.class);
-        channelManager = loadPredeployedContract(ChannelManagerContract.class);
-        papyrusToken = loadPredeployedContract(PapyrusToken.class);
+        registry = loadAbstractPredeployedContract(EndpointRegistryContract.class, EndpointRegistryContract.class.getSimpleName());
+        channelManager = loadAbstractPredeployedContract(ChannelManagerContract.class, ChannelManagerContract.class.getSimpleName());
+        papyrusToken = loadAbstractPredeployedContract(PapyrusToken.class, PapyrusToken.class.getSimpleName());
         address = new Address(credentials.getAddress());
-        tokenService = new TokenService(papyrusToken, address);
+        tokenService = new TokenService(this, address, blockClock);
+        //all checks in flight together
+        CompletableFuture<Void> checks = CompletableFuture.allOf(
+            checkContractExists(EndpointRegistryContract.class.getSimpleName(), registry.getContractAddress()),
+            checkContractExists(ChannelManagerContract.class.getSimpleName(), channelManager.getContractAddress()),
+            checkContractExists(PapyrusToken.class.getSimpleName(), papyrusToken.getContractAddress()),
+            call(channelManager, "token", new TypeReference<Address>() {}).thenAccept(channelManagerToken ->
+                Preconditions.checkState(new Address(papyrusToken.getContractAddress()).equals(channelManagerToken), "Wrong token contract %s != %s", papyrusToken.getContractAddress(), channelManagerToken))
+        );
         try {
-            Address channelManagerToken = channelManager.token().get();
-            Preconditions.checkState(new Address(papyrusToken.getContractAddress()).equals(channelManagerToken), "Wrong token contract %s != %s", papyrusToken.getContractAddress(), channelManagerToken);
-        } catch (Exception e) {
-            throw Throwables.propagate(e);
+            EthRpcEndpoints.await(checks);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
         }
     }
 
@@ -100,14 +123,15 @@ public class ContractsManager {
         }
     }
 
+    /**
+     * @return contract wrapper shared by all loads of the address while some of them is in use
+     */
     public <C extends Contract> C load(Class<C> contractClass, Address address)  {
         try {
-            //String contractAddress, Web3j web3j, TransactionManager transactionManager, BigInteger gasPrice, BigInteger gasLimit
-            Method method = contractClass.getDeclaredMethod("load", String.class, Web3j.class, TransactionManager.class, BigInteger.class, BigInteger.class);
-            Object contract = method.invoke(null, address.toString(), web3j, transactionManager, rpcProperties.getGasPrice(), rpcProperties.getGasLimit());
-            return contractClass.cast(contract);
-        } catch (Exception e) {
-            throw Throwables.propagate(e);
+            return contractClass.cast(contracts.get(new ContractKey(contractClass, address),
+                () -> ContractFactory.of(contractClass).create(address.toString(), web3j, transactionManager, rpcProperties.getGasPrice(), rpcProperties.getGasLimit())));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw Throwables.propagate(e.getCause());
         }
     }
 
@@ -120,7 +144,7 @@ public class ContractsManager {
             C c = loadAbstractPredeployedContract(contractClass, name);
             String contractAddress = c.getContractAddress();
 
-            String code = checkContractExists(name, contractAddress);
+            EthRpcEndpoints.await(checkContractExists(name, contractAddress));
 // TODO disable for now - because we deploy with truffle but compile to java from solc's output
 //            if (!c.getContractBinary().contains(code)) {
 //                throw new IllegalStateException("Contract code is not valid for " + name);
@@ -131,13 +155,16 @@ public class ContractsManager {
         }
     }
 
-    private String checkContractExists(String name, String contractAddress) throws IOException {
-        String code = CryptoUtil.getContractCode(web3j, contractAddress);
-        boolean exists = !code.equals("0");
-        if (!exists) {
-            throw new IllegalStateException("Contract " + name + " is not deployed at address: " + contractAddress);
-        }
-        return code;
+    private CompletableFuture<Void> checkContractExists(String name, String contractAddress) {
+        return web3j.ethGetCode(contractAddress, DefaultBlockParameterName.LATEST).sendAsync().thenAccept(ethGetCode -> {
+            if (ethGetCode.hasError()) {
+                throw new IllegalStateException("Failed to get code for " + contractAddress + ": " + ethGetCode.getError().getMessage());
+            }
+            boolean exists = !Numeric.cleanHexPrefix(ethGetCode.getCode()).equals("0");
+            if (!exists) {
+                throw new IllegalStateException("Contract " + name + " is not deployed at address: " + contractAddress);
+            }
+        });
     }
 
     public boolean contractExists(String contractAddress) throws IOException {
@@ -145,15 +172,53 @@ public class ContractsManager {
         return !code.equals("0") && !code.equals("");
     }
 
+    /**
+     * Calls constant contract function without blocking a thread while the node executes it, unlike generated
+     * contract methods.
+     * @return first returned value, null if function returned nothing
+     */
+    public <T extends Type> CompletableFuture<T> call(Contract contract, String functionName, TypeReference<T> output, Type... args) {
+        return call(contract, DefaultBlockParameterName.LATEST, functionName, output, args);
+    }
+
+    /**
+     * Same as {@link #call(Contract, String, TypeReference, Type...)} with state of the given block.
+     */
+    public <T extends Type> CompletableFuture<T> call(Contract contract, DefaultBlockParameter block, String functionName, TypeReference<T> output, Type... args) {
+        Function function = new Function(functionName, Arrays.asList(args), Collections.<TypeReference<?>>singletonList(output));
+        Transaction transaction = Transaction.createEthCallTransaction(contract.getContractAddress(), FunctionEncoder.encode(function));
+        return web3j.ethCall(transaction, block).sendAsync().thenApply(ethCall -> {
+            if (ethCall.hasError()) {
+                throw new IllegalStateException("Call of " + functionName + " failed: " + ethCall.getError().getMessage());
+            }
+            List<Type> values = FunctionReturnDecoder.decode(ethCall.getValue(), function.getOutputParameters());
+            @SuppressWarnings("unchecked")
+            T value = values.isEmpty() ? null : (T) values.get(0);
+            return value;
+        });
+    }
+
+    /**
+     * Sends transaction calling the contract function, receipt is awaited by {@link TransactionReceiptTracker}
+     * instead of blocking a thread like generated contract methods do. Completes exceptionally when the mined
+     * transaction used all its gas: it threw or ran out of gas.
+     */
+    public CompletableFuture<TransactionReceipt> execute(Contract contract, String functionName, Type... args) {
+        Function function = new Function(functionName, Arrays.asList(args), Collections.emptyList());
+        String data = FunctionEncoder.encode(function);
+        String to = contract.getContractAddress();
+        Class<? extends Contract> contractType = contract.getClass();
+        return receiptTracker.send(() -> transactionManager.sendTransaction(contractType, rpcProperties.getGasPrice(), rpcProperties.getGasLimit(), to, data, BigInteger.ZERO))
+            .thenApply(receipt -> {
+                if (!transactionManager.transactionMined(contractType, data, receipt)) {
+                    throw new IllegalStateException(String.format("Transaction %s of %s.%s failed", receipt.getTransactionHash(), contractType.getSimpleName(), functionName));
+                }
+                return receipt;
+            });
+    }
+
     public <C extends Contract> DeployingContract<C> startDeployment(Class<C> contractClass, Type... args) {
-        String binary;
-        try {
-            Field field = contractClass.getDeclaredField("BINARY");
-            field.setAccessible(true);
-            binary = (String) field.get(null);
-        } catch (NoSuchFieldException | IllegalAccessException | ClassCastException e) {
-            throw new IllegalStateException(e);
-        }
+        String binary = ContractFactory.of(contractClass).getBinary();
         String encodedConstructor = FunctionEncoder.encodeConstructor(Arrays.asList(args));
         try {
             String transactionHash = transactionManager.sendTransaction(rpcProperties.getGasPrice(), rpcProperties.getGasLimit(), null, binary + encodedConstructor, BigInteger.ZERO).getTransactionHash();
@@ -176,20 +241,10 @@ public class ContractsManager {
     }
 
     private <T extends Contract> T create(Class<T> type, TransactionReceipt rc) {
-        try {
-            Constructor<T> constructor = type.getDeclaredConstructor(
-                String.class,
-                Web3j.class, TransactionManager.class,
-                BigInteger.class, BigInteger.class);
-            constructor.setAccessible(true);
-
-            T contract = constructor.newInstance(null, web3j, transactionManager, rpcProperties.getGasPrice(), rpcProperties.getGasLimit());
-            contract.setContractAddress(rc.getContractAddress());
-            contract.setTransactionReceipt(rc);
-            return contract;
-        } catch (Exception e) {
-            throw Throwables.propagate(e);
-        }
+        T contract = ContractFactory.of(type).create(null, web3j, transactionManager, rpcProperties.getGasPrice(), rpcProperties.getGasLimit());
+        contract.setContractAddress(rc.getContractAddress());
+        contract.setTransactionReceipt(rc);
+        return contract;
     }
 
     public static <T> T checkError(Response<T> response) {
@@ -200,5 +255,26 @@ public class ContractsManager {
         return response.getResult();
     }
 
+    private static class ContractKey {
+        final Class<?> type;
+        final Address address;
+
+        ContractKey(Class<?> type, Address address) {
+            this.type = type;
+            this.address = address;
+        }
 
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ContractKey key = (ContractKey) o;
+            return type.equals(key.type) && address.equals(key.address);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, address);
+        }
+    }
 }
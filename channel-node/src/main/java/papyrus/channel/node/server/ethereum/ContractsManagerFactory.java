@@ -11,7 +11,6 @@ import org.web3j.abi.datatypes.Address;
 import org.web3j.crypto.CipherException;
 import org.web3j.crypto.Credentials;
 import org.web3j.protocol.Web3j;
-import org.web3j.tx.TransactionManager;
 
 import papyrus.channel.node.config.ContractsProperties;
 import papyrus.channel.node.config.EthProperties;
@@ -25,13 +24,17 @@ public class ContractsManagerFactory {
     private final EthereumConfig config;
     private final ContractsProperties contractsProperties;
     private final Web3j web3j;
+    private final TransactionReceiptTracker receiptTracker;
+    private final BlockClock blockClock;
 
     @Autowired
-    public ContractsManagerFactory(EthProperties ethProperties, EthereumConfig config, ContractsProperties contractsProperties, Web3j web3j) throws IOException, CipherException {
+    public ContractsManagerFactory(EthProperties ethProperties, EthereumConfig config, ContractsProperties contractsProperties, Web3j web3j, TransactionReceiptTracker receiptTracker, BlockClock blockClock) throws IOException, CipherException {
         this.ethProperties = ethProperties;
         this.config = config;
         this.contractsProperties = contractsProperties;
         this.web3j = web3j;
+        this.receiptTracker = receiptTracker;
+        this.blockClock = blockClock;
         managerMap = new HashMap<>();
 
         for (Address address : config.getAddresses()) {
@@ -40,8 +43,8 @@ public class ContractsManagerFactory {
         }
     }
 
-    public ContractsManager createManager(TransactionManager transactionManager, Credentials credentials) {
-        return new ContractsManager(ethProperties.getRpc(), web3j, credentials, contractsProperties, transactionManager);
+    public ContractsManager createManager(ThreadsafeTransactionManager transactionManager, Credentials credentials) {
+        return new ContractsManager(ethProperties.getRpc(), web3j, credentials, contractsProperties, transactionManager, receiptTracker, blockClock);
     }
 
 
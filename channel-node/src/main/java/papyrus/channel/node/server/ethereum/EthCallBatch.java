@@ -0,0 +1,205 @@
+package papyrus.channel.node.server.ethereum;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.springframework.stereotype.Component;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.FunctionReturnDecoder;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.utils.Numeric;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Executes several JSON-RPC requests as one batch request (web3j has no batch support). Batches are sent
+ * through {@link EthRpcEndpoints}: logs, block hashes and receipts go to the primary node, so indexer and
+ * receipt tracker see one chain, contract calls are balanced.
+ */
+@Component
+public class EthCallBatch {
+    private final EthRpcEndpoints endpoints;
+    private final ObjectMapper objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    public EthCallBatch(EthRpcEndpoints endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    /**
+     * @return decoded results in order of calls
+     */
+    public List<List<Type>> call(List<Call> calls) throws IOException {
+        return EthRpcEndpoints.await(callAsync(calls));
+    }
+
+    /**
+     * Same as {@link #call}, does not block while the node processes calls.
+     */
+    public CompletableFuture<List<List<Type>>> callAsync(List<Call> calls) {
+        if (calls.isEmpty()) return CompletableFuture.completedFuture(Collections.emptyList());
+        List<ArrayNode> params = new ArrayList<>(calls.size());
+        for (Call call : calls) {
+            ObjectNode transaction = objectMapper.createObjectNode()
+                .put("to", call.contractAddress.toString())
+                .put("data", FunctionEncoder.encode(call.function));
+            params.add(objectMapper.createArrayNode().add(transaction).add("latest"));
+        }
+        return sendAsync("eth_call", params, false).thenApply(responses -> {
+            List<List<Type>> results = new ArrayList<>(calls.size());
+            for (int i = 0; i < calls.size(); i++) {
+                results.add(FunctionReturnDecoder.decode(responses.get(i).asText(), calls.get(i).function.getOutputParameters()));
+            }
+            return results;
+        });
+    }
+
+    /**
+     * @return receipts in order of hashes, null for transactions not mined yet
+     */
+    public List<TransactionReceipt> getTransactionReceipts(List<String> transactionHashes) throws IOException {
+        if (transactionHashes.isEmpty()) return Collections.emptyList();
+        List<ArrayNode> params = new ArrayList<>(transactionHashes.size());
+        for (String hash : transactionHashes) {
+            params.add(objectMapper.createArrayNode().add(hash));
+        }
+        List<JsonNode> responses = send("eth_getTransactionReceipt", params, true);
+        List<TransactionReceipt> receipts = new ArrayList<>(transactionHashes.size());
+        for (JsonNode response : responses) {
+            receipts.add(response.isNull() ? null : objectMapper.treeToValue(response, TransactionReceipt.class));
+        }
+        return receipts;
+    }
+
+    /**
+     * @return hashes of blocks in current chain by block number, null for blocks which do not exist
+     */
+    public Map<Long, String> getBlockHashes(Collection<Long> blockNumbers) throws IOException {
+        if (blockNumbers.isEmpty()) return Collections.emptyMap();
+        List<Long> numbers = new ArrayList<>(blockNumbers);
+        List<ArrayNode> params = new ArrayList<>(numbers.size());
+        for (Long number : numbers) {
+            params.add(objectMapper.createArrayNode().add(Numeric.encodeQuantity(BigInteger.valueOf(number))).add(false));
+        }
+        List<JsonNode> responses = send("eth_getBlockByNumber", params, true);
+        Map<Long, String> hashes = new HashMap<>();
+        for (int i = 0; i < numbers.size(); i++) {
+            JsonNode hash = responses.get(i).path("hash");
+            hashes.put(numbers.get(i), hash.isTextual() ? hash.asText() : null);
+        }
+        return hashes;
+    }
+
+    /**
+     * @param topics alternatives of the first topic
+     * @return logs of the block range matching any of topics, in order of blocks
+     */
+    public List<Log> getLogs(long fromBlock, long toBlock, List<String> topics) throws IOException {
+        return getLogs(fromBlock, toBlock, null, topics);
+    }
+
+    /**
+     * @param contractAddresses emitters of logs, null for any contract
+     * @param topics alternatives of the first topic
+     * @return logs of the block range matching any of topics, in order of blocks
+     */
+    public List<Log> getLogs(long fromBlock, long toBlock, Collection<Address> contractAddresses, Collection<String> topics) throws IOException {
+        ObjectNode filter = objectMapper.createObjectNode()
+            .put("fromBlock", Numeric.encodeQuantity(BigInteger.valueOf(fromBlock)))
+            .put("toBlock", Numeric.encodeQuantity(BigInteger.valueOf(toBlock)));
+        if (contractAddresses != null) {
+            ArrayNode addresses = filter.putArray("address");
+            contractAddresses.forEach(address -> addresses.add(address.toString()));
+        }
+        ArrayNode firstTopic = filter.putArray("topics").addArray();
+        topics.forEach(firstTopic::add);
+        JsonNode response = send("eth_getLogs", Collections.singletonList(objectMapper.createArrayNode().add(filter)), true).get(0);
+        List<Log> logs = new ArrayList<>(response.size());
+        for (JsonNode log : response) {
+            logs.add(objectMapper.treeToValue(log, Log.class));
+        }
+        return logs;
+    }
+
+    private List<JsonNode> send(String method, List<ArrayNode> params, boolean primary) throws IOException {
+        return EthRpcEndpoints.await(sendAsync(method, params, primary));
+    }
+
+    /**
+     * Sends one request of the method per params element.
+     * @param primary send to the primary node
+     * @return results in order of params
+     */
+    private CompletableFuture<List<JsonNode>> sendAsync(String method, List<ArrayNode> params, boolean primary) {
+        ArrayNode request = objectMapper.createArrayNode();
+        for (int i = 0; i < params.size(); i++) {
+            request.addObject()
+                .put("jsonrpc", "2.0")
+                .put("id", i)
+                .put("method", method)
+                .set("params", params.get(i));
+        }
+
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(request);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return endpoints.post(primary, body).thenApply(bytes -> {
+            try {
+                return parseResults(method, params, objectMapper.readTree(bytes));
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    private static List<JsonNode> parseResults(String method, List<ArrayNode> params, JsonNode response) throws IOException {
+        if (!response.isArray()) {
+            throw new IOException("Batch requests are not supported by node: " + response);
+        }
+
+        List<JsonNode> results = new ArrayList<>(Collections.nCopies(params.size(), null));
+        for (JsonNode node : response) {
+            int id = node.path("id").asInt(-1);
+            if (id < 0 || id >= params.size()) {
+                throw new IOException("Unexpected response id: " + node.path("id"));
+            }
+            if (node.has("error")) {
+                throw new IOException(String.format("%s %s failed: %s", method, params.get(id), node.get("error").path("message").asText()));
+            }
+            results.set(id, node.path("result"));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i) == null) throw new IOException(String.format("No response for %s %s", method, params.get(i)));
+        }
+        return results;
+    }
+
+    public static class Call {
+        final Address contractAddress;
+        final Function function;
+
+        public Call(Address contractAddress, Function function) {
+            this.contractAddress = contractAddress;
+            this.function = function;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package papyrus.channel.node.server.ethereum;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.utils.Numeric;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import papyrus.channel.node.config.EthRpcProperties;
+
+/**
+ * Sends JSON-RPC requests to several Ethereum nodes. Reads go to the healthy endpoint with the lowest latency
+ * weighted by requests in flight, transactions, nonces, filters, logs, receipts and blocks are pinned to the
+ * primary endpoint, so they see one consistent node. Failed requests are retried on next endpoint.
+ * <br>
+ * Requests are sent by {@link AsyncHttpTransport}: {@link #sendAsync} does not hold a thread while waiting for
+ * the node, {@link #send} waits for the same future.
+ * <br>
+ * Endpoints are health checked with eth_blockNumber: an endpoint is excluded after several failures in a row
+ * or when it lags behind the others, and returns after the next successful check.
+ */
+public class EthRpcEndpoints implements Web3jService {
+    private static final Logger log = LoggerFactory.getLogger(EthRpcEndpoints.class);
+    private static final Set<String> PRIMARY_METHODS = ImmutableSet.of(
+        "eth_sendRawTransaction", "eth_sendTransaction", "eth_getTransactionCount",
+        "eth_newFilter", "eth_newBlockFilter", "eth_newPendingTransactionFilter",
+        "eth_getFilterChanges", "eth_getFilterLogs", "eth_uninstallFilter", "eth_getLogs",
+        //a lagging node would report missing receipts and other block hashes as reorganizations
+        "eth_getTransactionReceipt", "eth_getBlockByNumber", "eth_getBlockByHash"
+    );
+    private static final int MAX_FAILURES = 3;
+    private static final double LATENCY_ALPHA = 0.2;
+
+    //primary first
+    private final List<Endpoint> endpoints;
+    private final long healthCheckIntervalMs;
+    private final int maxBlockLag;
+    private final ScheduledExecutorService healthChecker;
+    private final ExecutorService callbackExecutor;
+    private final AsyncHttpTransport transport;
+    private final ObjectMapper objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final byte[] blockNumberRequest;
+
+    public EthRpcEndpoints(EthRpcProperties rpc) {
+        Set<String> urls = new LinkedHashSet<>();
+        if (rpc.getNodeUrl() != null) urls.add(rpc.getNodeUrl());
+        urls.addAll(rpc.getReadNodeUrls());
+        Preconditions.checkState(!urls.isEmpty(), "No eth.rpc.node-url defined");
+        endpoints = urls.stream().map(Endpoint::new).collect(Collectors.toList());
+        healthCheckIntervalMs = rpc.getHealthCheckInterval().toMillis();
+        maxBlockLag = rpc.getMaxBlockLag();
+        healthChecker = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("RPC health check").setDaemon(true).build());
+        callbackExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("RPC callback %d").setDaemon(true).build());
+        transport = new AsyncHttpTransport(rpc.getMaxConnections(), (int) rpc.getRequestTimeout().toMillis(), callbackExecutor);
+        try {
+            blockNumberRequest = objectMapper.writeValueAsBytes(objectMapper.createObjectNode()
+                .put("jsonrpc", "2.0")
+                .put("id", 1)
+                .put("method", "eth_blockNumber")
+                .set("params", objectMapper.createArrayNode()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (endpoints.size() > 1) {
+            healthChecker.scheduleWithFixedDelay(this::checkHealth, 0, healthCheckIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        healthChecker.shutdownNow();
+        transport.close();
+        callbackExecutor.shutdownNow();
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        return await(sendAsync(request, responseType));
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(request);
+        } catch (JsonProcessingException e) {
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        return post(PRIMARY_METHODS.contains(request.getMethod()), body).thenApply(response -> {
+            try {
+                return objectMapper.readValue(response, responseType);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Posts request body to endpoints in order of preference until one responds.
+     * @param primary pin request to the primary endpoint while it is healthy
+     * @return response body, completed with {@link IOException} of the last endpoint if all failed
+     */
+    public CompletableFuture<byte[]> post(boolean primary, byte[] body) {
+        return post(order(primary), 0, body);
+    }
+
+    private CompletableFuture<byte[]> post(List<Endpoint> order, int index, byte[] body) {
+        Endpoint endpoint = order.get(index);
+        long start = System.nanoTime();
+        endpoint.inFlight.incrementAndGet();
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        transport.post(endpoint.url, body).whenComplete((response, error) -> {
+            endpoint.inFlight.decrementAndGet();
+            if (error == null) {
+                endpoint.succeeded(System.nanoTime() - start);
+                result.complete(response);
+                return;
+            }
+            endpoint.failed();
+            log.debug("Request to {} failed: {}", endpoint.url, error.toString());
+            if (index + 1 < order.size()) {
+                post(order, index + 1, body).whenComplete((r, e) -> {
+                    if (e == null) result.complete(r); else result.completeExceptionally(e);
+                });
+            } else {
+                result.completeExceptionally(error);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Waits for RPC future, rethrowing {@link IOException} it failed with.
+     */
+    public static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return Collections.unmodifiableList(endpoints);
+    }
+
+    /**
+     * Healthy endpoints first, unhealthy are tried as last resort.
+     */
+    private List<Endpoint> order(boolean primary) {
+        if (endpoints.size() == 1) return endpoints;
+        List<Endpoint> healthy = new ArrayList<>(endpoints.size());
+        List<Endpoint> unhealthy = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            (endpoint.isHealthy() ? healthy : unhealthy).add(endpoint);
+        }
+        if (!primary) {
+            healthy.sort(Comparator.comparingDouble(Endpoint::score));
+        }
+        healthy.addAll(unhealthy);
+        return healthy;
+    }
+
+    private void checkHealth() {
+        long maxBlock = 0;
+        for (Endpoint endpoint : endpoints) {
+            boolean wasHealthy = endpoint.isHealthy();
+            long start = System.nanoTime();
+            try {
+                JsonNode response = objectMapper.readTree(await(transport.post(endpoint.url, blockNumberRequest)));
+                endpoint.blockNumber = Numeric.decodeQuantity(response.path("result").asText()).longValueExact();
+                endpoint.succeeded(System.nanoTime() - start);
+                maxBlock = Math.max(maxBlock, endpoint.blockNumber);
+            } catch (Exception e) {
+                endpoint.failed();
+                log.debug("Health check of {} failed: {}", endpoint.url, e.toString());
+            }
+            if (wasHealthy && !endpoint.isHealthy()) {
+                log.warn("RPC endpoint {} is down", endpoint.url);
+            }
+        }
+        for (Endpoint endpoint : endpoints) {
+            boolean wasLagging = endpoint.lagging;
+            endpoint.lagging = endpoint.blockNumber + maxBlockLag < maxBlock;
+            if (endpoint.lagging != wasLagging) {
+                log.warn("RPC endpoint {} is {} at block {}, best block {}", endpoint.url, endpoint.lagging ? "lagging" : "synced", endpoint.blockNumber, maxBlock);
+            }
+        }
+        log.debug("RPC endpoints: {}", endpoints);
+    }
+
+    public static class Endpoint {
+        private final String url;
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicInteger failuresInRow = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile double latencyMs;
+        private volatile long blockNumber;
+        private volatile boolean lagging;
+
+        Endpoint(String url) {
+            this.url = url;
+        }
+
+        private void succeeded(long nanos) {
+            requests.incrementAndGet();
+            failuresInRow.set(0);
+            double ms = nanos / 1_000_000.0;
+            //races between threads only lose a sample
+            latencyMs = latencyMs == 0 ? ms : latencyMs + LATENCY_ALPHA * (ms - latencyMs);
+        }
+
+        private void failed() {
+            requests.incrementAndGet();
+            errors.incrementAndGet();
+            failuresInRow.incrementAndGet();
+        }
+
+        private double score() {
+            return latencyMs * (inFlight.get() + 1);
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public boolean isHealthy() {
+            return failuresInRow.get() < MAX_FAILURES && !lagging;
+        }
+
+        public long getRequests() {
+            return requests.get();
+        }
+
+        public long getErrors() {
+            return errors.get();
+        }
+
+        /**
+         * @return moving average of request latency
+         */
+        public double getLatencyMs() {
+            return latencyMs;
+        }
+
+        public long getBlockNumber() {
+            return blockNumber;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s{healthy=%s, latency=%.1fms, requests=%d, errors=%d, block=%d}",
+                url, isHealthy(), latencyMs, requests.get(), errors.get(), blockNumber);
+        }
+    }
+}
@@ -6,6 +6,7 @@ import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.function.Supplier;
 
@@ -44,13 +45,13 @@ public class EthereumService {
 
     private EthereumConfig config;
     private final Web3j web3j;
-    private long blockNumber;
-    private long blockNumberUpdated;
+    private final BlockClock blockClock;
 
-    public EthereumService(EthereumConfig config, Web3j web3j) throws IOException, ExecutionException, InterruptedException {
+    public EthereumService(EthereumConfig config, Web3j web3j, BlockClock blockClock) throws IOException, ExecutionException, InterruptedException {
         this.config = config;
 
         this.web3j = web3j;
+        this.blockClock = blockClock;
     }
 
     @PostConstruct
@@ -104,23 +105,30 @@ public class EthereumService {
 
     public BigDecimal getBalance(String accountAddress, Convert.Unit unit) {
         try {
-            BigInteger balance = web3j.ethGetBalance(accountAddress, DefaultBlockParameterName.LATEST).send().getBalance();
-            return Convert.fromWei(new BigDecimal(balance), unit);
+            return EthRpcEndpoints.await(getBalanceAsync(accountAddress, unit));
         } catch (IOException e) {
             throw Throwables.propagate(e);
         }
     }
 
+    public CompletableFuture<BigDecimal> getBalanceAsync(String accountAddress, Convert.Unit unit) {
+        return web3j.ethGetBalance(accountAddress, DefaultBlockParameterName.LATEST).sendAsync()
+            .thenApply(balance -> Convert.fromWei(new BigDecimal(balance.getBalance()), unit));
+    }
+
     public long getBlockNumber() {
-        try {
-            if (blockNumber == 0 || System.currentTimeMillis() - blockNumberUpdated > 1000) {
-                blockNumber = web3j.ethBlockNumber().send().getBlockNumber().longValueExact();
-                blockNumberUpdated = System.currentTimeMillis();
-            }
-            return blockNumber;
-        } catch (IOException e) {
-            throw Throwables.propagate(e);
-        }
+        return blockClock.getBlockNumber();
+    }
+
+    /**
+     * @return moving average of observed time between blocks 
+     */
+    public long getAverageBlockTimeMs() {
+        return blockClock.getAverageBlockTimeMs();
+    }
+
+    public BlockClock getBlockClock() {
+        return blockClock;
     }
 
     public Address deployContract(TransactionManager transactionManager, String binary) throws InterruptedException, TransactionTimeoutException, IOException {
@@ -0,0 +1,115 @@
+package papyrus.channel.node.server.ethereum;
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gas needed by contract functions, keyed by contract wrapper class and function selector, so all channel contracts
+ * share profiles and no RPC is needed to identify the contract. A profile starts from live estimation, grows with
+ * gas used by mined transactions and is dropped after the revalidation interval or when a transaction fails, so next
+ * transaction is estimated again: estimation is also the check that the call does not throw in current contract
+ * state.
+ */
+class GasEstimateCache {
+    private static final int SELECTOR_LENGTH = 10;
+
+    private final long revalidateMs;
+    //bounded by functions of wrapper classes
+    private final Map<Key, Profile> profiles = new ConcurrentHashMap<>();
+
+    GasEstimateCache(long revalidateMs) {
+        this.revalidateMs = revalidateMs;
+    }
+
+    /**
+     * @return gas the call needs or null if it should be estimated
+     */
+    BigInteger get(Class<?> contractType, String data) {
+        Key key = key(contractType, data);
+        if (key == null) return null;
+        Profile profile = profiles.get(key);
+        if (profile == null || profile.validUntil < System.currentTimeMillis()) return null;
+        return profile.gas;
+    }
+
+    /**
+     * Stores result of live estimation.
+     */
+    void estimated(Class<?> contractType, String data, BigInteger gas) {
+        Key key = key(contractType, data);
+        if (key != null) {
+            profiles.put(key, new Profile(gas, System.currentTimeMillis() + revalidateMs));
+        }
+    }
+
+    /**
+     * Gas limit of transaction which needs the gas.
+     */
+    static BigInteger gasLimit(BigInteger gas) {
+        return gas.shiftLeft(1);
+    }
+
+    /**
+     * Learns from receipt of mined transaction.
+     * @param gasLimit gas limit the transaction was sent with
+     * @return true if transaction used all gas: it ran out of gas or threw, profile is dropped
+     */
+    boolean mined(Class<?> contractType, String data, BigInteger gasUsed, BigInteger gasLimit) {
+        boolean failed = gasUsed.compareTo(gasLimit) >= 0;
+        Key key = key(contractType, data);
+        if (key == null) return failed;
+        if (failed) {
+            profiles.remove(key);
+        } else {
+            profiles.computeIfPresent(key, (k, profile) -> gasUsed.compareTo(profile.gas) > 0 ? new Profile(gasUsed, profile.validUntil) : profile);
+        }
+        return failed;
+    }
+
+    void invalidate(Class<?> contractType, String data) {
+        Key key = key(contractType, data);
+        if (key != null) {
+            profiles.remove(key);
+        }
+    }
+
+    private static Key key(Class<?> contractType, String data) {
+        if (contractType == null || data == null || data.length() < SELECTOR_LENGTH) return null;
+        return new Key(contractType, data.substring(0, SELECTOR_LENGTH));
+    }
+
+    private static class Key {
+        final Class<?> contractType;
+        final String selector;
+
+        Key(Class<?> contractType, String selector) {
+            this.contractType = contractType;
+            this.selector = selector;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return contractType.equals(key.contractType) && selector.equals(key.selector);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(contractType, selector);
+        }
+    }
+
+    private static class Profile {
+        final BigInteger gas;
+        final long validUntil;
+
+        Profile(BigInteger gas, long validUntil) {
+            this.gas = gas;
+            this.validUntil = validUntil;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package papyrus.channel.node.server.ethereum;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.TreeSet;
+
+/**
+ * Hands out transaction nonces of one account. Only allocation is serialized, so transactions with allocated nonces
+ * may be estimated, signed and sent concurrently. Nonces of transactions which were not sent are returned
+ * and reused first, lowest one first, so they do not leave gaps blocking later transactions.
+ */
+class NonceAllocator {
+    private final Loader loader;
+    //next never allocated nonce, null until loaded from node
+    private BigInteger next;
+    private final TreeSet<BigInteger> released = new TreeSet<>();
+
+    NonceAllocator(Loader loader) {
+        this.loader = loader;
+    }
+
+    synchronized BigInteger allocate() throws IOException {
+        if (!released.isEmpty()) {
+            return released.pollFirst();
+        }
+        if (next == null) {
+            next = loader.load();
+        }
+        BigInteger nonce = next;
+        next = next.add(BigInteger.ONE);
+        return nonce;
+    }
+
+    /**
+     * Returns nonce of transaction which was not sent.
+     */
+    synchronized void release(BigInteger nonce) {
+        if (next == null || nonce.compareTo(next) >= 0) {
+            //allocated before reset
+            return;
+        }
+        released.add(nonce);
+        //shrink to the highest allocated nonce which is still in use
+        while (!released.isEmpty() && released.last().equals(next.subtract(BigInteger.ONE))) {
+            next = released.pollLast();
+        }
+    }
+
+    /**
+     * @return true if transactions with higher nonce were allocated, so the nonce blocks them until used
+     */
+    synchronized boolean isGap(BigInteger nonce) {
+        return next != null && nonce.add(BigInteger.ONE).compareTo(next) < 0;
+    }
+
+    /**
+     * Forgets local state, next nonce will be loaded from node. Used when node rejects nonce as already used.
+     */
+    synchronized void reset() {
+        next = null;
+        released.clear();
+    }
+
+    interface Loader {
+        /**
+         * @return transaction count of account including pending transactions
+         */
+        BigInteger load() throws IOException;
+    }
+}
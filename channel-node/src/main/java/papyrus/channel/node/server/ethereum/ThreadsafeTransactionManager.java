@@ -2,66 +2,160 @@ package papyrus.channel.node.server.ethereum;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.web3j.crypto.Credentials;
 import org.web3j.protocol.Web3j;
 import org.web3j.protocol.core.DefaultBlockParameterName;
 import org.web3j.protocol.core.methods.request.RawTransaction;
 import org.web3j.protocol.core.methods.request.Transaction;
-import org.web3j.protocol.core.methods.response.EthGetTransactionCount;
 import org.web3j.protocol.core.methods.response.EthSendTransaction;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.tx.Contract;
 import org.web3j.tx.RawTransactionManager;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+
 import papyrus.channel.node.config.EthRpcProperties;
 
+/**
+ * Sends transactions of one account concurrently: nonces are allocated by {@link NonceAllocator},
+ * gas estimation, signing and sending run outside of any lock. Gas of contract calls sent with the wrapper class
+ * is estimated once per function and then taken from {@link GasEstimateCache}.
+ */
 public class ThreadsafeTransactionManager extends RawTransactionManager {
+    private static final Logger log = LoggerFactory.getLogger(ThreadsafeTransactionManager.class);
+    private static final BigInteger TRANSFER_GAS = BigInteger.valueOf(21_000);
+    //node errors meaning that a transaction with the nonce is already pending or mined
+    private static final List<String> NONCE_USED_ERRORS = ImmutableList.of(
+        "nonce too low", "known transaction", "already known", "replacement transaction underpriced"
+    );
+
     private final Credentials credentials;
     private final Web3j web3j;
-    private BigInteger nonce = BigInteger.valueOf(-1);
+    private final NonceAllocator nonceAllocator;
+    private final GasEstimateCache gasEstimates;
+    //limit of transactions sent before restart
+    private final BigInteger defaultGasLimit;
+    //gas limits of sent transactions by hash, until their receipts are seen
+    private final Cache<String, BigInteger> sentGasLimits = CacheBuilder.newBuilder().expireAfterWrite(1, TimeUnit.HOURS).build();
 
     public ThreadsafeTransactionManager(Web3j web3j, Credentials credentials, EthRpcProperties rpc) {
         super(web3j, credentials, rpc.getAttempts(), (int) rpc.getSleep().toMillis());
         this.web3j = web3j;
         this.credentials = credentials;
-    }
-
-    BigInteger getNonce() throws IOException {
-        if (nonce.signum() == -1) {
-            EthGetTransactionCount ethGetTransactionCount = web3j.ethGetTransactionCount(
-                credentials.getAddress(), DefaultBlockParameterName.PENDING).send();
-
-            nonce = ethGetTransactionCount.getTransactionCount();
-        } else {
-            nonce = nonce.add(BigInteger.ONE);
-        }
-        return nonce;
+        this.nonceAllocator = new NonceAllocator(() -> web3j.ethGetTransactionCount(
+            credentials.getAddress(), DefaultBlockParameterName.PENDING).send().getTransactionCount());
+        this.gasEstimates = new GasEstimateCache(rpc.getGasEstimateTtl().toMillis());
+        this.defaultGasLimit = rpc.getGasLimit();
     }
 
     @Override
-    public synchronized EthSendTransaction sendTransaction(
+    public EthSendTransaction sendTransaction(
         BigInteger gasPrice, BigInteger gasLimit, String to,
         String data, BigInteger value) throws IOException {
+        return sendTransaction(null, gasPrice, gasLimit, to, data, value);
+    }
+
+    /**
+     * @param contractType wrapper class of called contract, functions of the class share gas profiles, null to
+     *                     estimate each transaction
+     */
+    public EthSendTransaction sendTransaction(
+        Class<? extends Contract> contractType, BigInteger gasPrice, BigInteger gasLimit, String to,
+        String data, BigInteger value) throws IOException {
 
-        BigInteger nonce = getNonce();
+        BigInteger nonce = nonceAllocator.allocate();
         boolean success = false;
+        BigInteger amountUsed = null;
         try {
-            BigInteger amountUsed = web3j.ethEstimateGas(new Transaction(getFromAddress(), nonce, gasPrice, gasLimit, to, value, data)).send().getAmountUsed();
+            amountUsed = gasEstimates.get(contractType, data);
+            if (amountUsed == null) {
+                amountUsed = web3j.ethEstimateGas(new Transaction(getFromAddress(), nonce, gasPrice, gasLimit, to, value, data)).send().getAmountUsed();
+                gasEstimates.estimated(contractType, data, amountUsed);
+            }
             if (amountUsed.compareTo(gasLimit) >= 0) {
                 throw new IllegalStateException(String.format("Estimate out of gas, from: %s, to : %s, gas limit: %s", getFromAddress(), to, gasLimit));
             }
+            BigInteger transactionGasLimit = GasEstimateCache.gasLimit(amountUsed);
             RawTransaction rawTransaction = RawTransaction.createTransaction(
                 nonce,
                 gasPrice,
-                amountUsed.shiftLeft(1),
+                transactionGasLimit,
                 to,
                 value,
                 data);
 
             EthSendTransaction transaction = signAndSend(rawTransaction);
-            success = true;
+            success = checkSent(transaction, nonce);
+            if (success && transaction.getTransactionHash() != null) {
+                sentGasLimits.put(transaction.getTransactionHash(), transactionGasLimit);
+            }
             return transaction;
         } finally {
-            if (!success) this.nonce = BigInteger.valueOf(-1);
+            if (!success) {
+                nonceNotUsed(nonce, gasPrice);
+                if (amountUsed != null) gasEstimates.invalidate(contractType, data);
+            }
+        }
+    }
+
+    /**
+     * Updates gas profile of the function with gas used by mined transaction.
+     * @return false if transaction used all its gas: it threw or ran out of gas
+     */
+    public boolean transactionMined(Class<? extends Contract> contractType, String data, TransactionReceipt receipt) {
+        BigInteger gasLimit = sentGasLimits.getIfPresent(receipt.getTransactionHash());
+        if (gasLimit != null) {
+            sentGasLimits.invalidate(receipt.getTransactionHash());
+        } else {
+            gasLimit = defaultGasLimit;
+        }
+        if (gasEstimates.mined(contractType, data, receipt.getGasUsed(), gasLimit)) {
+            log.warn("Transaction {} of {} used all gas {}, next call will be estimated", receipt.getTransactionHash(), contractType.getSimpleName(), gasLimit);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if nonce was used by transaction or node reported it as already used
+     */
+    private boolean checkSent(EthSendTransaction transaction, BigInteger nonce) {
+        if (!transaction.hasError()) return true;
+        String message = String.valueOf(transaction.getError().getMessage());
+        if (NONCE_USED_ERRORS.stream().anyMatch(message::contains)) {
+            //transaction was sent by other process, reload nonce from node
+            log.warn("Nonce {} of {} is already used: {}", nonce, getFromAddress(), message);
+            nonceAllocator.reset();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns nonce to allocator, or fills it with empty transfer to self if later transactions were already sent
+     * and would wait for it.
+     */
+    private void nonceNotUsed(BigInteger nonce, BigInteger gasPrice) {
+        if (nonceAllocator.isGap(nonce)) {
+            try {
+                RawTransaction filler = RawTransaction.createEtherTransaction(nonce, gasPrice, TRANSFER_GAS, getFromAddress(), BigInteger.ZERO);
+                EthSendTransaction transaction = signAndSend(filler);
+                if (checkSent(transaction, nonce)) {
+                    log.info("Filled nonce gap {} of {} with transaction {}", nonce, getFromAddress(), transaction.getTransactionHash());
+                    return;
+                }
+                log.warn("Failed to fill nonce gap {} of {}: {}", nonce, getFromAddress(), transaction.getError().getMessage());
+            } catch (IOException e) {
+                log.warn("Failed to fill nonce gap {} of {}: {}", nonce, getFromAddress(), e.toString());
+            }
         }
+        nonceAllocator.release(nonce);
     }
 }
@@ -0,0 +1,94 @@
+package papyrus.channel.node.server.ethereum;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.web3j.abi.datatypes.Address;
+import org.web3j.crypto.Hash;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.utils.Numeric;
+
+import papyrus.channel.node.entity.DataObject;
+
+/**
+ * Transfer or Approval event of the token contract.
+ */
+public class TokenEvent extends DataObject {
+    private final EventType type;
+    //sender of transfer or owner of approval
+    private final Address from;
+    //receiver of transfer or spender of approval
+    private final Address to;
+    private final BigInteger value;
+    private final long blockNumber;
+
+    private TokenEvent(EventType type, Address from, Address to, BigInteger value, long blockNumber) {
+        this.type = type;
+        this.from = from;
+        this.to = to;
+        this.value = value;
+        this.blockNumber = blockNumber;
+    }
+
+    /**
+     * @return topics of all event types, to be used as alternatives of first topic in log filter
+     */
+    public static List<String> allTopics() {
+        return Arrays.asList(EventType.TRANSFER.topic, EventType.APPROVAL.topic);
+    }
+
+    /**
+     * @return event or empty if log is not a token event
+     */
+    public static Optional<TokenEvent> parse(Log log) {
+        List<String> topics = log.getTopics();
+        if (topics == null || topics.size() < 3) return Optional.empty();
+        for (EventType type : EventType.values()) {
+            if (type.topic.equals(topics.get(0))) {
+                return Optional.of(new TokenEvent(
+                    type,
+                    new Address(Numeric.toBigInt(topics.get(1))),
+                    new Address(Numeric.toBigInt(topics.get(2))),
+                    Numeric.toBigInt(log.getData()),
+                    log.getBlockNumber().longValueExact()
+                ));
+            }
+        }
+        return Optional.empty();
+    }
+
+    public EventType getType() {
+        return type;
+    }
+
+    public Address getFrom() {
+        return from;
+    }
+
+    public Address getTo() {
+        return to;
+    }
+
+    public BigInteger getValue() {
+        return value;
+    }
+
+    public long getBlockNumber() {
+        return blockNumber;
+    }
+
+    public enum EventType {
+        TRANSFER("Transfer(address,address,uint256)"),
+        APPROVAL("Approval(address,address,uint256)"),
+        ;
+
+        final String topic;
+
+        EventType(String signature) {
+            this.topic = Numeric.toHexString(Hash.sha3(signature.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+}
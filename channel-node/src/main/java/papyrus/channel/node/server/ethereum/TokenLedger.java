@@ -0,0 +1,125 @@
+package papyrus.channel.node.server.ethereum;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.web3j.abi.datatypes.Address;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Token balance of one account, loaded once and then kept by transfer events, with local reservations of deposits
+ * approved but not transferred yet. Lock free: balance and reservations are an immutable state replaced by compare
+ * and set.
+ * <br>
+ * Events of blocks up to the load block are already included in loaded balance and are skipped. A load is rejected
+ * when events of later blocks were seen meanwhile, the caller loads again at newer block.
+ */
+class TokenLedger {
+    private final AtomicReference<State> state = new AtomicReference<>(new State(null, -1, -1, ImmutableMap.of()));
+
+    /**
+     * @return balance minus reservations, null if balance is not loaded
+     */
+    BigInteger available() {
+        State s = state.get();
+        return s.balance != null ? s.balance.subtract(s.reserved) : null;
+    }
+
+    /**
+     * Reserves value for spender, replacing its previous reservation like approve replaces allowance.
+     * @return false if balance is not loaded
+     * @throws IllegalStateException if available balance is less than value
+     */
+    boolean reserve(Address spender, BigInteger value) {
+        while (true) {
+            State s = state.get();
+            if (s.balance == null) return false;
+            BigInteger available = s.balance.subtract(s.reserved).add(s.reservations.getOrDefault(spender, BigInteger.ZERO));
+            if (available.compareTo(value) < 0) {
+                throw new IllegalStateException("Not enough funds to make deposit: " + available);
+            }
+            if (state.compareAndSet(s, s.withReservation(spender, value))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases up to value reserved for spender, when deposit was transferred or approval failed.
+     */
+    void release(Address spender, BigInteger value) {
+        state.updateAndGet(s -> {
+            BigInteger reserved = s.reservations.get(spender);
+            return reserved != null ? s.withReservation(spender, reserved.subtract(reserved.min(value))) : s;
+        });
+    }
+
+    /**
+     * Releases everything reserved for spender, when it will not transfer the deposit.
+     */
+    void release(Address spender) {
+        state.updateAndGet(s -> s.reservations.containsKey(spender) ? s.withReservation(spender, BigInteger.ZERO) : s);
+    }
+
+    /**
+     * @return false if events of later blocks were applied meanwhile
+     */
+    boolean loaded(BigInteger balance, long block) {
+        while (true) {
+            State s = state.get();
+            if (s.lastEventBlock > block) return false;
+            if (state.compareAndSet(s, new State(balance, block, s.lastEventBlock, s.reservations))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Applies transfer event, delta is negative for outgoing transfer.
+     */
+    void transferred(BigInteger delta, long block) {
+        state.updateAndGet(s -> new State(
+            s.balance != null && block > s.loadedAt ? s.balance.add(delta) : s.balance,
+            s.loadedAt,
+            Math.max(s.lastEventBlock, block),
+            s.reservations
+        ));
+    }
+
+    /**
+     * Forgets balance, it is loaded again on next use. Reservations are kept.
+     */
+    void reset() {
+        state.updateAndGet(s -> new State(null, -1, s.lastEventBlock, s.reservations));
+    }
+
+    private static class State {
+        final BigInteger balance;
+        final long loadedAt;
+        final long lastEventBlock;
+        final ImmutableMap<Address, BigInteger> reservations;
+        //sum of reservations
+        final BigInteger reserved;
+
+        State(BigInteger balance, long loadedAt, long lastEventBlock, ImmutableMap<Address, BigInteger> reservations) {
+            this.balance = balance;
+            this.loadedAt = loadedAt;
+            this.lastEventBlock = lastEventBlock;
+            this.reservations = reservations;
+            this.reserved = reservations.values().stream().reduce(BigInteger.ZERO, BigInteger::add);
+        }
+
+        State withReservation(Address spender, BigInteger value) {
+            Map<Address, BigInteger> updated = new HashMap<>(reservations);
+            if (value.signum() > 0) {
+                updated.put(spender, value);
+            } else {
+                updated.remove(spender);
+            }
+            return new State(balance, loadedAt, lastEventBlock, ImmutableMap.copyOf(updated));
+        }
+    }
+}
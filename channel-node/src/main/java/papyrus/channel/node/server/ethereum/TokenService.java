@@ -1,71 +1,156 @@
 package papyrus.channel.node.server.ethereum;
 
+import java.io.IOException;
 import java.math.BigInteger;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.web3j.abi.TypeReference;
 import org.web3j.abi.datatypes.Address;
 import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.protocol.core.DefaultBlockParameter;
 import org.web3j.protocol.core.methods.response.TransactionReceipt;
 
 import com.google.common.base.Throwables;
 
 import papyrus.channel.node.contract.PapyrusToken;
 
+/**
+ * Token balance and allowances of one account. Balance is loaded once and then kept current by token events
+ * from {@link #onTokenEvent}, deposits are reserved in {@link TokenLedger} without locks and RPC calls.
+ */
 public class TokenService {
+    private final ContractsManager contractsManager;
     private final PapyrusToken papyrusToken;
     private final Address address;
-    private BigInteger balance;
-    private CompletableFuture<BigInteger> balanceLoader;
+    private final BlockClock blockClock;
+    private final TokenLedger ledger = new TokenLedger();
+    //allowances seen in approval events, reduced by transfers to spender
+    private final Map<Address, BigInteger> allowances = new ConcurrentHashMap<>();
+    private final AtomicReference<CompletableFuture<Void>> balanceLoader = new AtomicReference<>();
 
-    public TokenService(PapyrusToken papyrusToken, Address address) {
-        this.papyrusToken = papyrusToken;
+    public TokenService(ContractsManager contractsManager, Address address, BlockClock blockClock) {
+        this.contractsManager = contractsManager;
+        this.papyrusToken = contractsManager.token();
         this.address = address;
+        this.blockClock = blockClock;
     }
 
-    public synchronized BigInteger getBalance() {
-        if (balance == null) {
+    /**
+     * @return balance minus deposits approved but not transferred yet
+     */
+    public BigInteger getBalance() {
+        BigInteger available;
+        while ((available = ledger.available()) == null) {
             reloadBalance();
         }
-        return balance;
+        return available;
     }
 
     public void reloadBalance() {
-        if (balanceLoader == null ||  balanceLoader.isCompletedExceptionally()) {
-            balanceLoader = CompletableFuture.supplyAsync(this::loadBalance); 
-        }
         try {
-            balance = balanceLoader.get();
-        } catch (Exception e) {
+            EthRpcEndpoints.await(loadBalance());
+        } catch (IOException e) {
             throw Throwables.propagate(e);
         }
     }
 
-    public synchronized void invalidateBalance() {
-        balance = null;
+    public void invalidateBalance() {
+        ledger.reset();
     }
 
-    public synchronized CompletableFuture<TransactionReceipt> approve(Address spender, BigInteger value) {
-        if (getBalance().compareTo(value) < 0) {
-            //try again
+    /**
+     * Approves deposit to spender, reserving it in available balance until it is transferred or released by
+     * {@link #releaseDeposit}. Approval replaces previous one of the spender.
+     */
+    public CompletableFuture<TransactionReceipt> approve(Address spender, BigInteger value) {
+        try {
+            reserve(spender, value);
+        } catch (IllegalStateException e) {
+            //balance could miss transfers not indexed yet
             reloadBalance();
-            if (balance.compareTo(value) < 0) {
-                throw new IllegalStateException("Not enough funds to make deposit: " + balance);
-            }
+            reserve(spender, value);
         }
-        balance = balance.subtract(value);
-        return (CompletableFuture<TransactionReceipt>) papyrusToken.approve(spender, new Uint256(value));
+        CompletableFuture<TransactionReceipt> result = contractsManager.execute(papyrusToken, "approve", spender, new Uint256(value));
+        result.whenComplete((receipt, error) -> {
+            if (error != null) ledger.release(spender, value);
+        });
+        return result;
     }
-    
+
+    /**
+     * Releases deposit approved to spender, when it will not be transferred.
+     */
+    public void releaseDeposit(Address spender) {
+        ledger.release(spender);
+    }
+
     public BigInteger allowance(Address spender) throws ExecutionException, InterruptedException {
-        return papyrusToken.allowance(address, spender).get().getValue();
+        return allowanceAsync(spender).get();
     }
 
-    private BigInteger loadBalance() {
-        try {
-            return papyrusToken.balanceOf(address).get().getValue();
-        } catch (Exception e) {
-            throw Throwables.propagate(e);
+    public CompletableFuture<BigInteger> allowanceAsync(Address spender) {
+        BigInteger known = allowances.get(spender);
+        if (known != null) return CompletableFuture.completedFuture(known);
+        return contractsManager.call(papyrusToken, "allowance", new TypeReference<Uint256>() {}, address, spender).thenApply(Uint256::getValue);
+    }
+
+    /**
+     * Applies event of the token contract, events are expected once each in blockchain order.
+     */
+    public void onTokenEvent(TokenEvent event) {
+        switch (event.getType()) {
+            case TRANSFER:
+                if (event.getFrom().equals(address)) {
+                    ledger.transferred(event.getValue().negate(), event.getBlockNumber());
+                    //deposit of channel is transferred by the channel itself
+                    ledger.release(event.getTo(), event.getValue());
+                    allowances.computeIfPresent(event.getTo(), (spender, allowance) -> allowance.subtract(event.getValue()).max(BigInteger.ZERO));
+                }
+                if (event.getTo().equals(address)) {
+                    ledger.transferred(event.getValue(), event.getBlockNumber());
+                }
+                break;
+            case APPROVAL:
+                if (event.getFrom().equals(address)) {
+                    allowances.put(event.getTo(), event.getValue());
+                }
+                break;
         }
     }
+
+    private void reserve(Address spender, BigInteger value) {
+        while (!ledger.reserve(spender, value)) {
+            reloadBalance();
+        }
+    }
+
+    /**
+     * Loads balance at current block, concurrent callers share one load.
+     */
+    private CompletableFuture<Void> loadBalance() {
+        CompletableFuture<Void> current = balanceLoader.get();
+        if (current != null && !current.isDone()) return current;
+        CompletableFuture<Void> loader = new CompletableFuture<>();
+        if (!balanceLoader.compareAndSet(current, loader)) return balanceLoader.get();
+        loadBalanceAt(blockClock.getBlockNumber(), loader);
+        return loader;
+    }
+
+    private void loadBalanceAt(long block, CompletableFuture<Void> loader) {
+        contractsManager.call(papyrusToken, DefaultBlockParameter.valueOf(BigInteger.valueOf(block)), "balanceOf", new TypeReference<Uint256>() {}, address)
+            .whenComplete((balance, error) -> {
+                if (error != null) {
+                    loader.completeExceptionally(error);
+                } else if (ledger.loaded(balance.getValue(), block)) {
+                    loader.complete(null);
+                } else {
+                    //events of later blocks arrived meanwhile
+                    loadBalanceAt(blockClock.getBlockNumber(), loader);
+                }
+            });
+    }
 }
@@ -0,0 +1,166 @@
+package papyrus.channel.node.server.ethereum;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.protocol.exceptions.TransactionTimeoutException;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import papyrus.channel.node.config.EthRpcProperties;
+import papyrus.channel.node.config.EthereumConfig;
+
+/**
+ * Waits for receipts of all sent transactions together: pending transactions are checked with one batch request
+ * on each new block instead of a thread polling every transaction. The check runs on its own thread, so a slow
+ * RPC endpoint does not delay other block clock subscribers.
+ * <br>
+ * With confirmations configured a receipt is held until enough blocks are mined on top of it and rechecked on each
+ * block meanwhile, so a transaction dropped by chain reorganization goes back to waiting instead of being reported.
+ */
+@Component
+public class TransactionReceiptTracker {
+    private static final Logger log = LoggerFactory.getLogger(TransactionReceiptTracker.class);
+
+    private final EthCallBatch batch;
+    private final BlockClock blockClock;
+    private final long timeoutMs;
+    private final int confirmations;
+    private final Map<String, PendingTransaction> pending = new ConcurrentHashMap<>();
+    //sends transactions and completes futures, so dependent actions do not run on block clock thread
+    private final ExecutorService executor;
+    private final ExecutorService checker;
+    private final AtomicBoolean checkScheduled = new AtomicBoolean();
+    private final LongConsumer blockListener = this::onNewBlock;
+
+    public TransactionReceiptTracker(EthCallBatch batch, BlockClock blockClock, EthereumConfig config) {
+        this.batch = batch;
+        this.blockClock = blockClock;
+        EthRpcProperties rpc = config.getRpcProperties();
+        timeoutMs = rpc.getSleep().toMillis() * rpc.getAttempts();
+        confirmations = rpc.getConfirmations();
+        executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("Transaction %d").setDaemon(true).build());
+        checker = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("Transaction receipts").setDaemon(true).build());
+    }
+
+    @PostConstruct
+    public void init() {
+        blockClock.subscribe(blockListener);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        blockClock.unsubscribe(blockListener);
+        checker.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Sends transaction asynchronously and waits for its receipt.
+     */
+    public CompletableFuture<TransactionReceipt> send(Callable<EthSendTransaction> sender) {
+        return CompletableFuture.supplyAsync(() -> {
+            EthSendTransaction response;
+            try {
+                response = sender.call();
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to send transaction", e);
+            }
+            if (response.hasError()) {
+                throw new IllegalStateException("Error processing transaction request: " + response.getError().getMessage());
+            }
+            return response.getTransactionHash();
+        }, executor).thenCompose(this::track);
+    }
+
+    /**
+     * @return receipt of transaction, completed with {@link TransactionTimeoutException} if transaction is not mined
+     * in time configured by attempts and sleep of {@link EthRpcProperties}
+     */
+    public CompletableFuture<TransactionReceipt> track(String transactionHash) {
+        return pending.computeIfAbsent(transactionHash, h -> new PendingTransaction(System.currentTimeMillis() + timeoutMs)).future;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private void onNewBlock(long blockNumber) {
+        if (pending.isEmpty()) return;
+        //blocks arrived during the check are picked by the next one
+        if (checkScheduled.compareAndSet(false, true)) {
+            checker.execute(() -> {
+                checkScheduled.set(false);
+                try {
+                    checkReceipts(blockClock.getBlockNumber());
+                } catch (Exception e) {
+                    log.error("Failed to check transaction receipts", e);
+                }
+            });
+        }
+    }
+
+    private void checkReceipts(long blockNumber) {
+        if (pending.isEmpty()) return;
+        List<String> hashes = new ArrayList<>(pending.keySet());
+        List<TransactionReceipt> receipts = null;
+        try {
+            receipts = batch.getTransactionReceipts(hashes);
+        } catch (IOException e) {
+            log.warn("Failed to check receipts of {} transactions: {}", hashes.size(), e.toString());
+        }
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < hashes.size(); i++) {
+            String hash = hashes.get(i);
+            TransactionReceipt receipt = receipts != null ? receipts.get(i) : null;
+            PendingTransaction transaction = pending.get(hash);
+            if (transaction == null) continue;
+            if (receipt != null) {
+                if (blockNumber - receipt.getBlockNumber().longValueExact() < confirmations) {
+                    transaction.minedIn = receipt.getBlockHash();
+                } else if (pending.remove(hash, transaction)) {
+                    executor.execute(() -> transaction.future.complete(receipt));
+                }
+            } else if (transaction.minedIn != null) {
+                if (receipts != null) {
+                    log.warn("Transaction {} was removed from block {} by chain reorganization", hash, transaction.minedIn);
+                    transaction.minedIn = null;
+                    transaction.deadline = now + timeoutMs;
+                }
+            } else if (transaction.deadline < now && pending.remove(hash, transaction)) {
+                TransactionTimeoutException error = new TransactionTimeoutException(
+                    "Transaction receipt was not generated after " + timeoutMs + "ms for transaction: " + hash);
+                executor.execute(() -> transaction.future.completeExceptionally(error));
+            }
+        }
+    }
+
+    private static class PendingTransaction {
+        final CompletableFuture<TransactionReceipt> future = new CompletableFuture<>();
+        //updated by checker thread only
+        long deadline;
+        //hash of the block with unconfirmed receipt
+        String minedIn;
+
+        PendingTransaction(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+}
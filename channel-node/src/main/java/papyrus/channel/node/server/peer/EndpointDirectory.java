@@ -0,0 +1,188 @@
+package papyrus.channel.node.server.peer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.web3j.abi.FunctionReturnDecoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.Utf8String;
+import org.web3j.crypto.Hash;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.utils.Numeric;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import papyrus.channel.node.config.EndpointDirectoryProperties;
+import papyrus.channel.node.server.channel.ChannelEventIndexer;
+import papyrus.channel.node.server.ethereum.BlockClock;
+import papyrus.channel.node.server.ethereum.ContractsManagerFactory;
+import papyrus.channel.node.server.ethereum.EthCallBatch;
+import papyrus.channel.node.server.ethereum.EthRpcEndpoints;
+
+/**
+ * Local directory of peer endpoints. Registrations are loaded once from AddressRegistered events of the endpoint
+ * registry and then kept current by the same events from {@link ChannelEventIndexer}, so lookups do not read
+ * the registry contract.
+ * <br>
+ * Entries expire after TTL as a safety net: an expired entry is still returned while it is read again from the
+ * registry in background. Addresses without endpoint are remembered for a shorter negative TTL. Unknown addresses
+ * are read from the registry, concurrent lookups of one address share the read.
+ */
+@EnableConfigurationProperties(EndpointDirectoryProperties.class)
+@Component
+public class EndpointDirectory {
+    private static final Logger log = LoggerFactory.getLogger(EndpointDirectory.class);
+    private static final String REGISTERED_TOPIC = Numeric.toHexString(Hash.sha3("AddressRegistered(address,string)".getBytes(StandardCharsets.UTF_8)));
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final List<TypeReference<Type>> REGISTERED_DATA = (List) Collections.singletonList(new TypeReference<Utf8String>() {});
+
+    private final EndpointRegistry registry;
+    private final ChannelEventIndexer indexer;
+    private final EthCallBatch batch;
+    private final BlockClock blockClock;
+    private final Address registryAddress;
+    private final long startBlock;
+    private final long ttlMs;
+    private final long negativeTtlMs;
+    private final Map<Address, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Address, CompletableFuture<Optional<String>>> reads = new ConcurrentHashMap<>();
+    private final ExecutorService loader;
+
+    public EndpointDirectory(
+        EndpointRegistry registry,
+        ChannelEventIndexer indexer,
+        EthCallBatch batch,
+        BlockClock blockClock,
+        ContractsManagerFactory contractsManagerFactory,
+        EndpointDirectoryProperties properties
+    ) {
+        this.registry = registry;
+        this.indexer = indexer;
+        this.batch = batch;
+        this.blockClock = blockClock;
+        registryAddress = new Address(contractsManagerFactory.getMainContractManager().endpointRegistry().getContractAddress());
+        startBlock = properties.getStartBlock();
+        ttlMs = properties.getTtl().toMillis();
+        negativeTtlMs = properties.getNegativeTtl().toMillis();
+        loader = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("Endpoint directory").setDaemon(true).build());
+    }
+
+    @PostConstruct
+    public void init() {
+        //subscribed before loading, registrations after the loaded blocks come from the indexer
+        indexer.subscribeLogs(registryAddress, Collections.singletonList(REGISTERED_TOPIC), this::onRegistered, this::rollback);
+        loader.execute(this::load);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        loader.shutdownNow();
+    }
+
+    public Optional<String> lookup(Address address) {
+        try {
+            return EthRpcEndpoints.await(lookupAsync(address));
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * @return endpoint known locally, completed immediately unless the address is unknown
+     */
+    public CompletableFuture<Optional<String>> lookupAsync(Address address) {
+        Entry entry = entries.get(address);
+        if (entry == null) {
+            return read(address);
+        }
+        if (entry.expiresAt < System.currentTimeMillis()) {
+            read(address);
+        }
+        return CompletableFuture.completedFuture(entry.endpoint);
+    }
+
+    private CompletableFuture<Optional<String>> read(Address address) {
+        CompletableFuture<Optional<String>> result = new CompletableFuture<>();
+        CompletableFuture<Optional<String>> running = reads.putIfAbsent(address, result);
+        if (running != null) return running;
+        long block = blockClock.getBlockNumber();
+        registry.lookupEndpointAsync(address).whenComplete((endpoint, error) -> {
+            reads.remove(address, result);
+            if (error != null) {
+                log.warn("Failed to read endpoint of {}: {}", address, error.toString());
+                result.completeExceptionally(error);
+            } else {
+                update(address, endpoint, block);
+                result.complete(endpoint);
+            }
+        });
+        return result;
+    }
+
+    private void load() {
+        try {
+            long head = blockClock.getBlockNumber();
+            List<Log> logs = batch.getLogs(startBlock, head, Collections.singletonList(registryAddress), Collections.singletonList(REGISTERED_TOPIC));
+            logs.forEach(this::onRegistered);
+            log.info("Loaded {} endpoint registrations up to block {}", logs.size(), head);
+        } catch (Exception e) {
+            //addresses are read from the registry on lookup
+            log.warn("Failed to load endpoint registrations: {}", e.toString());
+        }
+    }
+
+    private void onRegistered(Log l) {
+        List<String> topics = l.getTopics();
+        if (topics == null || topics.size() < 2) return;
+        Address address = new Address(Numeric.toBigInt(topics.get(1)));
+        List<Type> data = FunctionReturnDecoder.decode(l.getData(), REGISTERED_DATA);
+        String endpoint = data.isEmpty() ? "" : ((Utf8String) data.get(0)).getValue();
+        log.debug("Endpoint of {} registered: {}", address, endpoint);
+        update(address, endpoint.isEmpty() ? Optional.empty() : Optional.of(endpoint), l.getBlockNumber().longValueExact());
+    }
+
+    /**
+     * Forgets entries of removed blocks, they are read again on next lookup.
+     */
+    private void rollback(long forkPoint) {
+        entries.values().removeIf(entry -> entry.block > forkPoint);
+    }
+
+    /**
+     * Keeps the entry of the later block, events of the initial load may arrive after newer ones from the indexer.
+     */
+    private void update(Address address, Optional<String> endpoint, long block) {
+        long expiresAt = System.currentTimeMillis() + (endpoint.isPresent() ? ttlMs : negativeTtlMs);
+        entries.merge(address, new Entry(endpoint, block, expiresAt), (current, updated) -> updated.block >= current.block ? updated : current);
+    }
+
+    private static class Entry {
+        final Optional<String> endpoint;
+        final long block;
+        final long expiresAt;
+
+        Entry(Optional<String> endpoint, long block, long expiresAt) {
+            this.endpoint = endpoint;
+            this.block = block;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
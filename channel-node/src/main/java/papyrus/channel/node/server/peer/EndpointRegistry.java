@@ -1,12 +1,14 @@
 package papyrus.channel.node.server.peer;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.web3j.abi.TypeReference;
 import org.web3j.abi.datatypes.Address;
 import org.web3j.abi.datatypes.Utf8String;
 
@@ -14,43 +16,62 @@ import com.google.common.base.Throwables;
 
 import papyrus.channel.node.config.EthereumConfig;
 import papyrus.channel.node.contract.EndpointRegistryContract;
+import papyrus.channel.node.server.ethereum.ContractsManager;
 import papyrus.channel.node.server.ethereum.ContractsManagerFactory;
 
 @Service
 public class EndpointRegistry {
     private static final Logger log = LoggerFactory.getLogger(EndpointRegistry.class);
     
-    private EndpointRegistryContract registry;
+    private final ContractsManager contractsManager;
+    private final EndpointRegistryContract registry;
 
     @Autowired
     public EndpointRegistry(EthereumConfig config, ContractsManagerFactory factory) {
-        this.registry = factory.getContractManager(config.getMainAddress()).endpointRegistry();
+        this(factory.getContractManager(config.getMainAddress()));
     }
 
-    public EndpointRegistry(EndpointRegistryContract registry) {
-        this.registry = registry;
+    public EndpointRegistry(ContractsManager contractsManager) {
+        this.contractsManager = contractsManager;
+        this.registry = contractsManager.endpointRegistry();
     }
     
     public void registerEndpoint(Address address, String endpointUrl) {
         try {
-            Utf8String currentEndpoint = registry.findEndpointByAddress(address).get();
-            if (currentEndpoint != null && currentEndpoint.getValue().equals(endpointUrl)) {
-                log.info("Endpoint already registered, will not update");
-            } else {
-                log.info("Registering endpoint {} -> {}", address, endpointUrl);
-                registry.registerEndpoint(new Utf8String(endpointUrl)).get();
-            }
+            lookupEndpointAsync(address).thenCompose(current -> registerEndpointAsync(address, endpointUrl, current)).get();
         } catch (InterruptedException | ExecutionException e) {
             throw new IllegalStateException("Failed to register node", e);
         }
     }
+
+    /**
+     * @param currentEndpoint endpoint registered now, registration is skipped when it is the same
+     */
+    public CompletableFuture<Void> registerEndpointAsync(Address address, String endpointUrl, Optional<String> currentEndpoint) {
+        if (currentEndpoint.isPresent() && currentEndpoint.get().equals(endpointUrl)) {
+            log.info("Endpoint already registered, will not update");
+            return CompletableFuture.completedFuture(null);
+        }
+        log.info("Registering endpoint {} -> {}", address, endpointUrl);
+        return contractsManager.execute(registry, "registerEndpoint", new Utf8String(endpointUrl)).thenApply(receipt -> null);
+    }
     
     public Optional<String> lookupEndpoint(Address address) {
         try {
-            String value = registry.findEndpointByAddress(address).get().getValue();
-            return value != null && !value.isEmpty() ? Optional.of(value) : Optional.empty();
+            return lookupEndpointAsync(address).get();
         } catch (Exception e) {
             throw Throwables.propagate(e);
         }
     }
+
+    public CompletableFuture<Optional<String>> lookupEndpointAsync(Address address) {
+        return findEndpoint(address).thenApply(endpoint -> {
+            String value = endpoint != null ? endpoint.getValue() : null;
+            return value != null && !value.isEmpty() ? Optional.of(value) : Optional.empty();
+        });
+    }
+
+    private CompletableFuture<Utf8String> findEndpoint(Address address) {
+        return contractsManager.call(registry, "findEndpointByAddress", new TypeReference<Utf8String>() {}, address);
+    }
 }
@@ -17,6 +17,8 @@ public class PeerConnection implements Closeable {
     private final OutgoingChannelClientGrpc.OutgoingChannelClientBlockingStub outgoingChannelClient;
     private final IncomingChannelClientGrpc.IncomingChannelClientBlockingStub incomingChannelClient;
     private final ChannelPeerGrpc.ChannelPeerBlockingStub channelPeer;
+    private final ChannelPeerGrpc.ChannelPeerFutureStub channelPeerFuture;
+    private final PeerStateStream stateStream;
 
     public PeerConnection(URI nodeUrl) {
         Protocol protocol = Protocol.valueOf(nodeUrl.getScheme());
@@ -28,6 +30,8 @@ public class PeerConnection implements Closeable {
         outgoingChannelClient = OutgoingChannelClientGrpc.newBlockingStub(channel);
         incomingChannelClient = IncomingChannelClientGrpc.newBlockingStub(channel);
         channelPeer = ChannelPeerGrpc.newBlockingStub(channel);
+        channelPeerFuture = ChannelPeerGrpc.newFutureStub(channel);
+        stateStream = new PeerStateStream(ChannelPeerGrpc.newStub(channel));
     }
 
     public ManagedChannel getChannel() {
@@ -50,8 +54,17 @@ public class PeerConnection implements Closeable {
         return channelPeer;
     }
 
+    public ChannelPeerGrpc.ChannelPeerFutureStub getChannelPeerFuture() {
+        return channelPeerFuture;
+    }
+
+    public PeerStateStream getStateStream() {
+        return stateStream;
+    }
+
     @Override
     public void close() throws IOException {
+        stateStream.close();
         channel.shutdown();
     }
     
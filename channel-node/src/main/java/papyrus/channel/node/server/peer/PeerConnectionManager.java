@@ -12,11 +12,11 @@ import com.google.common.base.Preconditions;
 
 @Component
 public class PeerConnectionManager {
-    private EndpointRegistry endpointRegistry;
+    private EndpointDirectory endpointDirectory;
     private Map<Address, PeerConnection> connections = new ConcurrentHashMap<>();
 
-    public PeerConnectionManager(EndpointRegistry endpointRegistry) {
-        this.endpointRegistry = endpointRegistry;
+    public PeerConnectionManager(EndpointDirectory endpointDirectory) {
+        this.endpointDirectory = endpointDirectory;
     }
     
     public PeerConnection getConnection(Address address) {
@@ -24,7 +24,7 @@ public class PeerConnectionManager {
     }
 
     private PeerConnection open(Address address) {
-        String endpoint = endpointRegistry.lookupEndpoint(address).orElseThrow(() -> new IllegalStateException("Endpoint not registered for " + address));
+        String endpoint = endpointDirectory.lookup(address).orElseThrow(() -> new IllegalStateException("Endpoint not registered for " + address));
         try {
             URI uri = new URI(endpoint);
             Preconditions.checkState("grpc".equals(uri.getScheme()), "Scheme not supported: %s", uri);
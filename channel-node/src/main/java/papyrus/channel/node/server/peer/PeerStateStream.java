@@ -0,0 +1,155 @@
+package papyrus.channel.node.server.peer;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import papyrus.channel.protocol.ChannelPeerGrpc;
+import papyrus.channel.protocol.ChannelStateAck;
+import papyrus.channel.protocol.ChannelStateMessage;
+
+/**
+ * Long-lived StateStream call to one peer, shared by all channels to it. States are written while gRPC flow control
+ * reports the stream ready, the rest wait in queue. Peer acknowledges each state by channel address and nonce.
+ * <br>
+ * When the call fails, states waiting for ack fail with its status and the next state opens a new call.
+ */
+public class PeerStateStream {
+    private static final Logger log = LoggerFactory.getLogger(PeerStateStream.class);
+
+    private final ChannelPeerGrpc.ChannelPeerStub stub;
+    private Call call;
+
+    public PeerStateStream(ChannelPeerGrpc.ChannelPeerStub stub) {
+        this.stub = stub;
+    }
+
+    /**
+     * @return completed when peer accepted the state, exceptionally when it rejected the state or the call failed
+     */
+    public CompletableFuture<Void> send(ChannelStateMessage state) {
+        Call current;
+        synchronized (this) {
+            if (call == null || call.closed) {
+                call = new Call();
+                stub.stateStream(call);
+            }
+            current = call;
+        }
+        return current.send(state);
+    }
+
+    public synchronized void close() {
+        if (call != null) {
+            call.complete();
+            call = null;
+        }
+    }
+
+    private static class Call implements ClientResponseObserver<ChannelStateMessage, ChannelStateAck> {
+        private final Queue<ChannelStateMessage> queue = new ArrayDeque<>();
+        private final Map<AckKey, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+        private ClientCallStreamObserver<ChannelStateMessage> requests;
+        private volatile boolean closed;
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<ChannelStateMessage> requests) {
+            this.requests = requests;
+            requests.setOnReadyHandler(this::drain);
+        }
+
+        CompletableFuture<Void> send(ChannelStateMessage state) {
+            AckKey key = new AckKey(state.getChannelAddress(), state.getNonce());
+            CompletableFuture<Void> ack = new CompletableFuture<>();
+            CompletableFuture<Void> previous = pending.put(key, ack);
+            if (previous != null) {
+                previous.completeExceptionally(Status.ALREADY_EXISTS.withDescription("State sent again").asException());
+            }
+            ack.whenComplete((r, e) -> pending.remove(key, ack));
+            synchronized (this) {
+                queue.add(state);
+            }
+            drain();
+            //acks pending at close are failed by it
+            if (closed) {
+                ack.completeExceptionally(Status.UNAVAILABLE.withDescription("State stream closed").asException());
+            }
+            return ack;
+        }
+
+        private synchronized void drain() {
+            while (!closed && requests.isReady() && !queue.isEmpty()) {
+                requests.onNext(queue.poll());
+            }
+        }
+
+        synchronized void complete() {
+            if (!closed) {
+                requests.onCompleted();
+            }
+        }
+
+        @Override
+        public void onNext(ChannelStateAck ack) {
+            CompletableFuture<Void> future = pending.get(new AckKey(ack.getChannelAddress(), ack.getNonce()));
+            if (future == null) {
+                log.debug("Unexpected ack of channel {} state {}", ack.getChannelAddress(), ack.getNonce());
+            } else if (ack.getError().getMessage().isEmpty()) {
+                future.complete(null);
+            } else {
+                future.completeExceptionally(Status.FAILED_PRECONDITION.withDescription(ack.getError().getMessage()).asException());
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            log.warn("State stream failed: {}", t.toString());
+            fail(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            fail(Status.UNAVAILABLE.withDescription("State stream closed by peer").asException());
+        }
+
+        private void fail(Throwable t) {
+            closed = true;
+            synchronized (this) {
+                queue.clear();
+            }
+            pending.values().forEach(ack -> ack.completeExceptionally(t));
+        }
+    }
+
+    private static class AckKey {
+        final String channelAddress;
+        final long nonce;
+
+        AckKey(String channelAddress, long nonce) {
+            this.channelAddress = channelAddress;
+            this.nonce = nonce;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            AckKey ackKey = (AckKey) o;
+            return nonce == ackKey.nonce && channelAddress.equals(ackKey.channelAddress);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(channelAddress, nonce);
+        }
+    }
+}
@@ -50,6 +50,11 @@ public class CassandraRepository<Id, T> {
         mapper.save(value);
     }
 
+    public ListenableFuture<Void> saveAsync(T value) {
+        beforeSave(value);
+        return mapper.saveAsync(value);
+    }
+
     protected void beforeSave(T value) {
     }
 
@@ -13,6 +13,8 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
@@ -38,6 +40,7 @@ import com.google.common.util.concurrent.Uninterruptibles;
 public class CassandraUtil {
     private static final int MAX_RETRY = 5;
     private static final Logger log = LoggerFactory.getLogger(CassandraUtil.class);
+    private static final Pattern ADD_COLUMN = Pattern.compile("(?is)ALTER\\s+TABLE\\s+(\\w+)\\.(\\w+)\\s+ADD\\s+(\\w+)\\s.*");
     
     private CassandraUtil() {
     }
@@ -142,6 +145,17 @@ public class CassandraUtil {
         }
     }
 
+    /**
+     * Cassandra has no ALTER TABLE ADD IF NOT EXISTS, schema migrations adding columns are checked by metadata.
+     */
+    static boolean isExistingColumn(Session session, String statement) {
+        Matcher matcher = ADD_COLUMN.matcher(statement);
+        if (!matcher.matches()) return false;
+        KeyspaceMetadata keyspace = session.getCluster().getMetadata().getKeyspace(matcher.group(1));
+        TableMetadata table = keyspace != null ? keyspace.getTable(matcher.group(2)) : null;
+        return table != null && table.getColumn(matcher.group(3)) != null;
+    }
+
     static void executeWithLog(Session session, String statement) {
         try {
             log.info("Executing: {}", statement);
@@ -181,7 +195,7 @@ public class CassandraUtil {
 
             for (String statement : statements) {
                 statement = statement.trim();
-                if (statement.isEmpty()) continue;
+                if (statement.isEmpty() || isExistingColumn(session, statement)) continue;
                 executeWithLog(session, statement);
             }
         } catch (IOException e) {
@@ -0,0 +1,72 @@
+package papyrus.channel.node.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+
+/**
+ * Hashes of the last processed blocks. Block hash covers all previous blocks, so comparing the last stored hash
+ * with the current chain detects a reorganization below it, and comparing all stored hashes finds the fork point.
+ * <br>
+ * Not thread safe.
+ */
+public class BlockHashWindow {
+    private final int size;
+    private final TreeMap<Long, String> hashes = new TreeMap<>();
+
+    public BlockHashWindow(int size) {
+        this.size = size;
+    }
+
+    public void put(long block, String hash) {
+        hashes.put(block, hash);
+        while (hashes.size() > size) {
+            hashes.pollFirstEntry();
+        }
+    }
+
+    public boolean isEmpty() {
+        return hashes.isEmpty();
+    }
+
+    public long lastBlock() {
+        return hashes.lastKey();
+    }
+
+    public String lastHash() {
+        return hashes.lastEntry().getValue();
+    }
+
+    public List<Long> blocks() {
+        return new ArrayList<>(hashes.keySet());
+    }
+
+    /**
+     * @param current hashes of stored blocks in current chain, missing or null for blocks which do not exist anymore
+     * @return last stored block which is still in the chain, or the block before the window if none is,
+     * empty if the chain was not reorganized
+     */
+    public OptionalLong findForkPoint(Map<Long, String> current) {
+        long forkPoint = hashes.firstKey() - 1;
+        for (Map.Entry<Long, String> entry : hashes.entrySet()) {
+            if (!entry.getValue().equals(current.get(entry.getKey()))) {
+                return OptionalLong.of(forkPoint);
+            }
+            forkPoint = entry.getKey();
+        }
+        return OptionalLong.empty();
+    }
+
+    /**
+     * Forgets blocks after the fork point.
+     */
+    public void rollback(long forkPoint) {
+        hashes.tailMap(forkPoint, false).clear();
+    }
+
+    public void clear() {
+        hashes.clear();
+    }
+}
@@ -0,0 +1,144 @@
+package papyrus.channel.node.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Hierarchical timing wheel keyed on block number. Level 0 has a slot per block, each next level has a slot per
+ * whole round of the previous one. Entries are moved to lower levels when their slot is reached, so advancing
+ * by one block touches only the entries due in it.
+ * <br>
+ * Not thread safe.
+ */
+public class BlockTimerWheel<T> {
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private final List<List<Entry<T>>> slots = new ArrayList<>(LEVELS * SLOTS);
+    private List<Entry<T>> overflow = new ArrayList<>();
+    private long currentBlock;
+    private int size;
+
+    public BlockTimerWheel(long currentBlock) {
+        this.currentBlock = currentBlock;
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    public long getCurrentBlock() {
+        return currentBlock;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return false if deadline already reached, value is not scheduled in this case
+     */
+    public boolean schedule(long deadlineBlock, T value) {
+        if (deadlineBlock <= currentBlock) return false;
+        add(new Entry<>(deadlineBlock, value));
+        return true;
+    }
+
+    /**
+     * Moves the wheel to the given block.
+     *
+     * @return values which deadlines were reached, in order of deadlines
+     */
+    public List<T> advance(long block) {
+        List<T> expired = new ArrayList<>();
+        if (block <= currentBlock) return expired;
+        if (block - currentBlock > SLOTS) {
+            //long jump, cheaper to redistribute all the entries than to tick through
+            List<Entry<T>> all = new ArrayList<>(size);
+            for (List<Entry<T>> slot : slots) {
+                all.addAll(slot);
+                slot.clear();
+            }
+            all.addAll(overflow);
+            overflow = new ArrayList<>();
+            size = 0;
+            currentBlock = block;
+            all.sort((e1, e2) -> Long.compare(e1.deadline, e2.deadline));
+            for (Entry<T> entry : all) {
+                addOrExpire(entry, expired);
+            }
+            return expired;
+        }
+        while (currentBlock < block) {
+            currentBlock ++;
+            tick(expired);
+        }
+        return expired;
+    }
+
+    private void tick(List<T> expired) {
+        if ((currentBlock & ((1L << (BITS * LEVELS)) - 1)) == 0) {
+            List<Entry<T>> entries = overflow;
+            overflow = new ArrayList<>();
+            size -= entries.size();
+            for (Entry<T> entry : entries) {
+                addOrExpire(entry, expired);
+            }
+        }
+        for (int level = LEVELS - 1; level > 0; level--) {
+            if ((currentBlock & ((1L << (BITS * level)) - 1)) != 0) continue;
+            List<Entry<T>> slot = slot(level, currentBlock);
+            if (slot.isEmpty()) continue;
+            List<Entry<T>> entries = new ArrayList<>(slot);
+            slot.clear();
+            size -= entries.size();
+            for (Entry<T> entry : entries) {
+                addOrExpire(entry, expired);
+            }
+        }
+        List<Entry<T>> slot = slot(0, currentBlock);
+        for (Entry<T> entry : slot) {
+            Preconditions.checkState(entry.deadline == currentBlock);
+            expired.add(entry.value);
+        }
+        size -= slot.size();
+        slot.clear();
+    }
+
+    private void addOrExpire(Entry<T> entry, List<T> expired) {
+        if (entry.deadline <= currentBlock) {
+            expired.add(entry.value);
+        } else {
+            add(entry);
+        }
+    }
+
+    private void add(Entry<T> entry) {
+        size ++;
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = BITS * (level + 1);
+            if ((entry.deadline >>> shift) == (currentBlock >>> shift)) {
+                slot(level, entry.deadline).add(entry);
+                return;
+            }
+        }
+        overflow.add(entry);
+    }
+
+    private List<Entry<T>> slot(int level, long block) {
+        return slots.get(level * SLOTS + (int) ((block >>> (BITS * level)) & MASK));
+    }
+
+    private static class Entry<T> {
+        final long deadline;
+        final T value;
+
+        Entry(long deadline, T value) {
+            this.deadline = deadline;
+            this.value = value;
+        }
+    }
+}
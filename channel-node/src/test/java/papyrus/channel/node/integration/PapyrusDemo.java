@@ -25,14 +25,17 @@ import papyrus.channel.node.config.PropertyConvertersConfig;
 import papyrus.channel.node.config.Web3jConfigurer;
 import papyrus.channel.node.contract.ChannelContract;
 import papyrus.channel.node.server.channel.SignedChannelState;
+import papyrus.channel.node.server.ethereum.BlockClock;
 import papyrus.channel.node.server.ethereum.ContractsManager;
 import papyrus.channel.node.server.ethereum.ContractsManagerFactory;
+import papyrus.channel.node.server.ethereum.EthCallBatch;
 import papyrus.channel.node.server.ethereum.EthereumService;
 import papyrus.channel.node.server.ethereum.TokenConvert;
+import papyrus.channel.node.server.ethereum.TransactionReceiptTracker;
 
 @EnableConfigurationProperties({EthProperties.class, ContractsProperties.class})
 @SpringBootApplication()
-@Import({PropertyConvertersConfig.class, EthereumConfig.class, Web3jConfigurer.class, ContractsManagerFactory.class, EthereumService.class})
+@Import({PropertyConvertersConfig.class, EthereumConfig.class, Web3jConfigurer.class, ContractsManagerFactory.class, EthereumService.class, BlockClock.class, EthCallBatch.class, TransactionReceiptTracker.class})
 public class PapyrusDemo {
 //    private static final String PROFILE = "demo";
     private static final String PROFILE = "demomain";
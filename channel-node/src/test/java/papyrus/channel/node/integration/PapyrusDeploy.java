@@ -23,12 +23,13 @@ import papyrus.channel.node.config.EthProperties;
 import papyrus.channel.node.config.EthereumConfig;
 import papyrus.channel.node.config.PropertyConvertersConfig;
 import papyrus.channel.node.config.Web3jConfigurer;
+import papyrus.channel.node.server.ethereum.BlockClock;
 import papyrus.channel.node.server.ethereum.EthereumService;
 import papyrus.channel.node.server.ethereum.ThreadsafeTransactionManager;
 
 @EnableConfigurationProperties({EthProperties.class, ContractsProperties.class})
 @SpringBootApplication()
-@Import({PropertyConvertersConfig.class, EthereumConfig.class, Web3jConfigurer.class, EthereumService.class})
+@Import({PropertyConvertersConfig.class, EthereumConfig.class, Web3jConfigurer.class, EthereumService.class, BlockClock.class})
 public class PapyrusDeploy {
     private static final String PROFILE = "deploy";
 //    private static final String PROFILE = "demomain";
@@ -0,0 +1,59 @@
+package papyrus.channel.node.server.ethereum;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NonceAllocatorTest {
+
+    @Test
+    public void testReleasedNoncesReused() throws IOException {
+        AtomicInteger loads = new AtomicInteger();
+        NonceAllocator allocator = new NonceAllocator(() -> {
+            loads.incrementAndGet();
+            return BigInteger.valueOf(10);
+        });
+        Assert.assertEquals(BigInteger.valueOf(10), allocator.allocate());
+        Assert.assertEquals(BigInteger.valueOf(11), allocator.allocate());
+        Assert.assertEquals(BigInteger.valueOf(12), allocator.allocate());
+        Assert.assertEquals(BigInteger.valueOf(13), allocator.allocate());
+        Assert.assertEquals(1, loads.get());
+
+        Assert.assertTrue(allocator.isGap(BigInteger.valueOf(11)));
+        Assert.assertFalse(allocator.isGap(BigInteger.valueOf(13)));
+        allocator.release(BigInteger.valueOf(12));
+        allocator.release(BigInteger.valueOf(11));
+        Assert.assertEquals(BigInteger.valueOf(11), allocator.allocate());
+        Assert.assertEquals(BigInteger.valueOf(12), allocator.allocate());
+        Assert.assertEquals(BigInteger.valueOf(14), allocator.allocate());
+    }
+
+    @Test
+    public void testReleaseShrinksTail() throws IOException {
+        NonceAllocator allocator = new NonceAllocator(() -> BigInteger.ZERO);
+        for (int i = 0; i < 4; i++) {
+            allocator.allocate();
+        }
+        allocator.release(BigInteger.valueOf(2));
+        allocator.release(BigInteger.valueOf(3));
+        Assert.assertFalse(allocator.isGap(BigInteger.valueOf(1)));
+        Assert.assertEquals(BigInteger.valueOf(2), allocator.allocate());
+        Assert.assertEquals(BigInteger.valueOf(3), allocator.allocate());
+        Assert.assertEquals(BigInteger.valueOf(4), allocator.allocate());
+    }
+
+    @Test
+    public void testResetReloads() throws IOException {
+        AtomicInteger count = new AtomicInteger(5);
+        NonceAllocator allocator = new NonceAllocator(() -> BigInteger.valueOf(count.get()));
+        Assert.assertEquals(BigInteger.valueOf(5), allocator.allocate());
+        allocator.allocate();
+        count.set(20);
+        allocator.reset();
+        allocator.release(BigInteger.valueOf(6));
+        Assert.assertEquals(BigInteger.valueOf(20), allocator.allocate());
+    }
+}
@@ -0,0 +1,74 @@
+package papyrus.channel.node.server.ethereum;
+
+import java.math.BigInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.web3j.abi.datatypes.Address;
+
+public class TokenLedgerTest {
+    private static final Address CHANNEL = new Address(BigInteger.ONE);
+    private static final Address OTHER_CHANNEL = new Address(BigInteger.valueOf(2));
+
+    @Test
+    public void testReservations() {
+        TokenLedger ledger = new TokenLedger();
+        Assert.assertNull(ledger.available());
+        Assert.assertFalse(ledger.reserve(CHANNEL, BigInteger.TEN));
+
+        Assert.assertTrue(ledger.loaded(BigInteger.valueOf(100), 5));
+        Assert.assertTrue(ledger.reserve(CHANNEL, BigInteger.valueOf(30)));
+        Assert.assertEquals(BigInteger.valueOf(70), ledger.available());
+        try {
+            ledger.reserve(OTHER_CHANNEL, BigInteger.valueOf(71));
+            Assert.fail();
+        } catch (IllegalStateException expected) {
+        }
+
+        //deposit transferred to channel
+        ledger.transferred(BigInteger.valueOf(-30), 6);
+        ledger.release(CHANNEL, BigInteger.valueOf(30));
+        Assert.assertEquals(BigInteger.valueOf(70), ledger.available());
+        ledger.release(CHANNEL, BigInteger.valueOf(30));
+        Assert.assertEquals(BigInteger.valueOf(70), ledger.available());
+    }
+
+    @Test
+    public void testReservationReplacedAndReleased() {
+        TokenLedger ledger = new TokenLedger();
+        Assert.assertTrue(ledger.loaded(BigInteger.valueOf(100), 5));
+        Assert.assertTrue(ledger.reserve(CHANNEL, BigInteger.valueOf(30)));
+        Assert.assertTrue(ledger.reserve(OTHER_CHANNEL, BigInteger.valueOf(20)));
+        //approved again, not added
+        Assert.assertTrue(ledger.reserve(CHANNEL, BigInteger.valueOf(80)));
+        Assert.assertEquals(BigInteger.ZERO, ledger.available());
+
+        ledger.release(CHANNEL);
+        Assert.assertEquals(BigInteger.valueOf(80), ledger.available());
+        ledger.release(OTHER_CHANNEL, BigInteger.valueOf(5));
+        Assert.assertEquals(BigInteger.valueOf(85), ledger.available());
+    }
+
+    @Test
+    public void testEventsIncludedInLoadAreSkipped() {
+        TokenLedger ledger = new TokenLedger();
+        Assert.assertTrue(ledger.loaded(BigInteger.valueOf(100), 10));
+        ledger.transferred(BigInteger.valueOf(5), 10);
+        Assert.assertEquals(BigInteger.valueOf(100), ledger.available());
+        ledger.transferred(BigInteger.valueOf(5), 11);
+        ledger.transferred(BigInteger.valueOf(-1), 11);
+        Assert.assertEquals(BigInteger.valueOf(104), ledger.available());
+    }
+
+    @Test
+    public void testLoadRejectedAfterLaterEvents() {
+        TokenLedger ledger = new TokenLedger();
+        ledger.transferred(BigInteger.valueOf(5), 12);
+        Assert.assertFalse(ledger.loaded(BigInteger.valueOf(100), 11));
+        Assert.assertNull(ledger.available());
+        Assert.assertTrue(ledger.loaded(BigInteger.valueOf(105), 12));
+
+        ledger.reset();
+        Assert.assertNull(ledger.available());
+    }
+}
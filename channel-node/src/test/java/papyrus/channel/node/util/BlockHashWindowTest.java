@@ -0,0 +1,53 @@
+package papyrus.channel.node.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BlockHashWindowTest {
+
+    @Test
+    public void testNoReorg() {
+        BlockHashWindow window = new BlockHashWindow(3);
+        Map<Long, String> chain = new HashMap<>();
+        for (long i = 1; i <= 5; i++) {
+            window.put(i, "h" + i);
+            chain.put(i, "h" + i);
+        }
+        Assert.assertEquals(3, window.blocks().size());
+        Assert.assertEquals(5, window.lastBlock());
+        Assert.assertEquals("h5", window.lastHash());
+        Assert.assertFalse(window.findForkPoint(chain).isPresent());
+    }
+
+    @Test
+    public void testForkPoint() {
+        BlockHashWindow window = new BlockHashWindow(10);
+        Map<Long, String> chain = new HashMap<>();
+        for (long i = 1; i <= 5; i++) {
+            window.put(i, "h" + i);
+            chain.put(i, i < 4 ? "h" + i : "x" + i);
+        }
+        chain.remove(5L);
+        OptionalLong forkPoint = window.findForkPoint(chain);
+        Assert.assertEquals(3, forkPoint.getAsLong());
+
+        window.rollback(forkPoint.getAsLong());
+        Assert.assertEquals(3, window.lastBlock());
+        Assert.assertFalse(window.findForkPoint(chain).isPresent());
+    }
+
+    @Test
+    public void testReorgDeeperThanWindow() {
+        BlockHashWindow window = new BlockHashWindow(2);
+        Map<Long, String> chain = new HashMap<>();
+        for (long i = 1; i <= 5; i++) {
+            window.put(i, "h" + i);
+            chain.put(i, "x" + i);
+        }
+        Assert.assertEquals(3, window.findForkPoint(chain).getAsLong());
+    }
+}
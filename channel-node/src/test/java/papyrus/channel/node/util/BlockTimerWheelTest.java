@@ -0,0 +1,61 @@
+package papyrus.channel.node.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BlockTimerWheelTest {
+
+    @Test
+    public void testFiresAtDeadline() {
+        BlockTimerWheel<Long> wheel = new BlockTimerWheel<>(1000);
+        Assert.assertFalse(wheel.schedule(1000, 1000L));
+        long[] deadlines = {1001, 1063, 1064, 1065, 5000, 1000 + (1 << 18), 1000 + (1 << 24) + 5};
+        for (long deadline : deadlines) {
+            Assert.assertTrue(wheel.schedule(deadline, deadline));
+        }
+        Assert.assertEquals(deadlines.length, wheel.size());
+        for (long deadline : deadlines) {
+            Assert.assertEquals(Collections.emptyList(), wheel.advance(deadline - 1));
+            Assert.assertEquals(Collections.singletonList(deadline), wheel.advance(deadline));
+        }
+        Assert.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testStepByStep() {
+        Random random = new Random(1);
+        BlockTimerWheel<Long> wheel = new BlockTimerWheel<>(4_000_000);
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            long deadline = 4_000_001 + random.nextInt(10_000);
+            wheel.schedule(deadline, deadline);
+            expected.add(deadline);
+        }
+        Collections.sort(expected);
+        List<Long> fired = new ArrayList<>();
+        for (long block = 4_000_001; block <= 4_010_000; block += 1 + random.nextInt(3)) {
+            for (Long deadline : wheel.advance(block)) {
+                Assert.assertTrue(deadline <= block && deadline > block - 3);
+                fired.add(deadline);
+            }
+        }
+        fired.addAll(wheel.advance(4_010_000));
+        Assert.assertEquals(expected, fired);
+    }
+
+    @Test
+    public void testLongJump() {
+        BlockTimerWheel<Long> wheel = new BlockTimerWheel<>(0);
+        wheel.schedule(4_000_100L, 4_000_100L);
+        wheel.schedule(4_000_010L, 4_000_010L);
+        wheel.schedule(3_000_000L, 3_000_000L);
+        Assert.assertEquals(Collections.singletonList(3_000_000L), wheel.advance(4_000_000));
+        Assert.assertEquals(Arrays.asList(4_000_010L, 4_000_100L), wheel.advance(4_000_200));
+    }
+}
@@ -119,6 +119,29 @@ contract ChannelContract {
         selfdestruct(0);
     }
 
+    /// @notice Returns complete state of the channel to read it with one call.
+    /// @return numbers Settle, close and audit timeouts, opened, close requested, closed, settled
+    ///         and audited block numbers, balance, nonce and completed transfers.
+    /// @return parties Manager, sender, client, receiver and auditor addresses.
+    function getState() constant returns (uint[11] numbers, address[5] parties) {
+        numbers[0] = data.settle_timeout;
+        numbers[1] = data.close_timeout;
+        numbers[2] = data.audit_timeout;
+        numbers[3] = data.opened;
+        numbers[4] = data.close_requested;
+        numbers[5] = data.closed;
+        numbers[6] = data.settled;
+        numbers[7] = data.audited;
+        numbers[8] = data.balance;
+        numbers[9] = data.nonce;
+        numbers[10] = data.completed_transfers;
+        parties[0] = address(data.manager);
+        parties[1] = data.sender;
+        parties[2] = data.client;
+        parties[3] = data.receiver;
+        parties[4] = data.auditor;
+    }
+
     function sender() constant returns (address) {
         return data.sender;
     }